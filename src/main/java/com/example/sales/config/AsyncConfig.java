@@ -1,11 +1,14 @@
 package com.example.sales.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -21,4 +24,77 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    // 长区间聚合分片查询的线程池，线程数即同时占用的数据库连接数上限
+    @Bean(name = "rangeQueryExecutor")
+    public Executor rangeQueryExecutor(@Value("${sales.parallel.threads:8}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("RangeQuery-");
+        // 队列满时由提交分片的请求线程自己执行
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // 列式文件导出，每个线程同时生成一个文件并占用一个数据库连接
+    @Bean(name = "exportExecutor")
+    public Executor exportExecutor(@Value("${sales.export.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("Export-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 列式文件导入时并行读取记录批次，与发起导入的 fileImportExecutor 分开，避免等待自己的子任务
+    @Bean(name = "columnarReadExecutor")
+    public Executor columnarReadExecutor(@Value("${sales.import.read-threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("ColumnarRead-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 流式响应（导出、明细流、NDJSON）的 MVC 异步线程池。每个线程在整个响应期间占用一个数据库连接，
+    // 线程数不超过连接池的一半，给普通请求留出连接；不排队，占满时提交被拒绝，由 StreamingRejectionHandler 返回 503
+    @Bean(name = "mvcAsyncExecutor")
+    public ThreadPoolTaskExecutor mvcAsyncExecutor(@Value("${sales.stream.threads:8}") int threads,
+                                                   @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        int size = Math.max(1, Math.min(threads, poolSize / 2));
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("MvcAsync-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 热点分析结果的后台刷新与预热，与请求线程和导入线程隔离
+    @Bean(name = "analyticsRefreshScheduler")
+    public ThreadPoolTaskScheduler analyticsRefreshScheduler(@Value("${sales.refresh.threads:2}") int threads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("AnalyticsRefresh-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    // 看板指标推送的定时合并发送，单线程，不与刷新任务争用
+    @Bean(name = "kpiPushScheduler")
+    public ThreadPoolTaskScheduler kpiPushScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("KpiPush-");
+        scheduler.initialize();
+        return scheduler;
+    }
 }
@@ -1,16 +1,36 @@
 package com.example.sales.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 
 @Configuration
 public class JacksonConfig {
     
     @Bean
     public ObjectMapper objectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+        return configure(new ObjectMapper());
+    }
+
+    // Accept 为 application/cbor 或 application/x-jackson-smile 时以二进制格式输出
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(ResponseMappers responseMappers) {
+        return new MappingJackson2CborHttpMessageConverter(responseMappers.forFormat(ResponseFormat.CBOR));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(ResponseMappers responseMappers) {
+        return new MappingJackson2SmileHttpMessageConverter(responseMappers.forFormat(ResponseFormat.SMILE));
+    }
+
+    static ObjectMapper configure(ObjectMapper mapper) {
         mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        // java.time 类型按 ISO-8601 字符串输出
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         return mapper;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.example.sales.config;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分析接口的响应格式，按 Accept 的质量值和具体程度选择，q=0 的类型不会被选中；无法识别或格式错误时为 JSON。
+ */
+public enum ResponseFormat {
+    JSON("application/json"),
+    CBOR("application/cbor"),
+    SMILE("application/x-jackson-smile");
+
+    private final MediaType mediaType;
+
+    ResponseFormat(String mediaType) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public static ResponseFormat fromAccept(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        // 通配类型按枚举顺序匹配，*/* 与 application/* 选 JSON
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            for (ResponseFormat format : values()) {
+                if (type.includes(format.mediaType) && !refused(accepted, format)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    // 客户端以 q=0 明确拒绝的格式，例如 application/cbor;q=0
+    private static boolean refused(List<MediaType> accepted, ResponseFormat format) {
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0 && type.includes(format.mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.sales.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 各响应格式对应的 ObjectMapper。二进制格式与 JSON 使用相同的配置，不注册为 ObjectMapper Bean，避免按类型注入时冲突。
+ */
+@Component
+public class ResponseMappers {
+
+    private final Map<ResponseFormat, ObjectMapper> mappers = new EnumMap<>(ResponseFormat.class);
+
+    @Autowired
+    public ResponseMappers(ObjectMapper objectMapper) {
+        mappers.put(ResponseFormat.JSON, objectMapper);
+        mappers.put(ResponseFormat.CBOR, JacksonConfig.configure(new ObjectMapper(new CBORFactory())));
+        mappers.put(ResponseFormat.SMILE, JacksonConfig.configure(new ObjectMapper(new SmileFactory())));
+    }
+
+    public ObjectMapper forFormat(ResponseFormat format) {
+        return mappers.get(format);
+    }
+}
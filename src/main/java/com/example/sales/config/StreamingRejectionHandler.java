@@ -0,0 +1,27 @@
+package com.example.sales.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * 异步线程池已满时拒绝新的流式请求，返回 503，客户端稍后重试。
+ */
+@Slf4j
+@ControllerAdvice
+public class StreamingRejectionHandler {
+
+    private static final String RETRY_AFTER_SECONDS = "30";
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<String> handleRejected(TaskRejectedException e) {
+        log.warn("异步线程已满，拒绝请求: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body("服务繁忙，请稍后重试");
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.sales.config;
+
+import com.example.sales.controller.KpiWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final KpiWebSocketHandler kpiWebSocketHandler;
+    private final String[] allowedOrigins;
+
+    @Autowired
+    public WebSocketConfig(KpiWebSocketHandler kpiWebSocketHandler,
+                           @Value("${sales.live.allowed-origins:http://localhost:3000}") String[] allowedOrigins) {
+        this.kpiWebSocketHandler = kpiWebSocketHandler;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    // 握手请求经过 Shiro 过滤链，与其他接口一样需要已登录。浏览器建立 WebSocket 连接不受同源策略限制且会带上 Cookie，
+    // 只接受同源和配置中列出的来源，其他站点的页面不能以当前用户身份订阅指标
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(kpiWebSocketHandler, "/ws/kpi")
+                .setAllowedOriginPatterns(allowedOrigins);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.sales.controller;
+
+import com.example.sales.service.export.ArrowExportService;
+import org.apache.shiro.authz.annotation.RequiresRoles;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 列式文件导出任务，文件写在服务端的导出目录中，响应列出生成的文件。
+ */
+@Controller
+@RequestMapping("/api/export/arrow")
+public class ArrowExportController {
+
+    private final ArrowExportService arrowExportService;
+
+    @Autowired
+    public ArrowExportController(ArrowExportService arrowExportService) {
+        this.arrowExportService = arrowExportService;
+    }
+
+    // 重新生成区间覆盖的各月文件
+    @PostMapping("/months")
+    @ResponseBody
+    @RequiresRoles("ADMIN")
+    public CompletableFuture<ResponseEntity<?>> exportMonths(@RequestParam LocalDate startDate,
+                                                             @RequestParam LocalDate endDate) {
+        try {
+            return arrowExportService.exportMonths(startDate, endDate).thenApply(ArrowExportController::toResponse);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+    }
+
+    // 只导出新增或行数有变化的导入批次
+    @PostMapping("/imports")
+    @ResponseBody
+    @RequiresRoles("ADMIN")
+    public CompletableFuture<ResponseEntity<?>> exportImports() {
+        return arrowExportService.exportImports().thenApply(ArrowExportController::toResponse);
+    }
+
+    private static ResponseEntity<?> toResponse(Map<String, Object> result) {
+        if ("success".equals(result.get("status"))) {
+            return ResponseEntity.ok(result);
+        }
+        return ResponseEntity.internalServerError().body(result);
+    }
+}
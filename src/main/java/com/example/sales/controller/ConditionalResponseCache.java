@@ -0,0 +1,148 @@
+package com.example.sales.controller;
+
+import com.example.sales.config.ResponseFormat;
+import com.example.sales.config.ResponseMappers;
+import com.example.sales.service.cache.CachedValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 分析接口的条件 GET。ETag 由数据版本和请求参数算出，If-None-Match 命中时在查询之前返回 304；
+ * 序列化后的响应按 ETag 缓存，版本不变时直接返回同一份字节。
+ * 仍在后台刷新的过期结果不带 ETag 返回，避免客户端把旧结果当作新版本缓存下来。
+ * 响应格式按 Accept 选择 JSON、CBOR 或 Smile，不同格式使用不同的 ETag 和缓存条目。
+ * 每个 200 响应都带 Age：结果计算完成至今的秒数，字节缓存命中时按缓存时记下的计算时刻推算。
+ */
+@Slf4j
+@Component
+public class ConditionalResponseCache {
+
+    private final ResponseMappers responseMappers;
+    private final int maxEntries;
+    private final Map<String, Encoded> responses = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Autowired
+    public ConditionalResponseCache(ResponseMappers responseMappers,
+                                    @Value("${sales.etag.max-entries:64}") int maxEntries) {
+        this.responseMappers = responseMappers;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 弱 ETag：响应中的水位线等字段可能不同，但同一版本下内容在语义上相同。
+     */
+    public static String etag(String operation, String version, Object... params) {
+        String source = operation + "|" + version + "|" + Arrays.deepToString(params);
+        return "W/\"" + DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    public <T> ResponseEntity<?> respond(String ifNoneMatch, String accept, String etag, Supplier<CachedValue<T>> loader) {
+        ResponseFormat format = ResponseFormat.fromAccept(accept);
+        etag = variant(etag, format);
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .build();
+        }
+        Encoded cached;
+        synchronized (this) {
+            cached = responses.get(etag);
+        }
+        if (cached != null) {
+            return encoded(etag, format, cached);
+        }
+
+        CachedValue<T> value = loader.get();
+        if (value.isStale()) {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.AGE, String.valueOf(value.getAgeSeconds()))
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(value.getValue());
+        }
+        byte[] body;
+        try {
+            body = responseMappers.forFormat(format).writeValueAsBytes(value.getValue());
+        } catch (JsonProcessingException e) {
+            log.warn("响应序列化失败: {}", e.getMessage());
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.AGE, String.valueOf(value.getAgeSeconds()))
+                    .body(value.getValue());
+        }
+        Encoded encoded = new Encoded(body, System.currentTimeMillis() - value.getAgeSeconds() * 1000);
+        synchronized (this) {
+            responses.put(etag, encoded);
+            if (responses.size() > maxEntries) {
+                responses.remove(responses.keySet().iterator().next());
+            }
+        }
+        return encoded(etag, format, encoded);
+    }
+
+    private static ResponseEntity<byte[]> encoded(String etag, ResponseFormat format, Encoded encoded) {
+        long age = Math.max(0, (System.currentTimeMillis() - encoded.computedAt) / 1000);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.AGE, String.valueOf(age))
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.getMediaType())
+                .body(encoded.body);
+    }
+
+    // JSON 保持原 ETag，二进制格式在引号内加上格式后缀
+    private static String variant(String etag, ResponseFormat format) {
+        if (format == ResponseFormat.JSON) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + format.name().toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    // If-None-Match 可以是逗号分隔的多个 ETag 或 *，按弱比较忽略 W/ 前缀
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Encoded {
+        private final byte[] body;
+        private final long computedAt;
+
+        private Encoded(byte[] body, long computedAt) {
+            this.body = body;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -1,27 +1,155 @@
 package com.example.sales.controller;
 
+import com.example.sales.config.ResponseFormat;
+import com.example.sales.config.ResponseMappers;
+import com.example.sales.service.AnalyticsCacheService;
+import com.example.sales.service.DataVersionService;
 import com.example.sales.service.DataVisualizationService;
+import com.example.sales.service.PeriodComparisonService;
 import com.example.sales.dto.VisualizationData;
+import com.example.sales.service.format.ColumnarDetailWriter;
+import com.example.sales.service.series.TrendDownsampler;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/api/data/visualization")
 public class DataVisualizationController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final AnalyticsCacheService analyticsCacheService;
     private final DataVisualizationService visualizationService;
+    private final DataVersionService dataVersionService;
+    private final ConditionalResponseCache conditionalResponseCache;
+    private final ObjectMapper objectMapper;
+    private final ResponseMappers responseMappers;
 
     @Autowired
-    public DataVisualizationController(DataVisualizationService visualizationService) {
+    public DataVisualizationController(AnalyticsCacheService analyticsCacheService,
+                                       DataVisualizationService visualizationService,
+                                       DataVersionService dataVersionService,
+                                       ConditionalResponseCache conditionalResponseCache,
+                                       ObjectMapper objectMapper,
+                                       ResponseMappers responseMappers) {
+        this.analyticsCacheService = analyticsCacheService;
         this.visualizationService = visualizationService;
+        this.dataVersionService = dataVersionService;
+        this.conditionalResponseCache = conditionalResponseCache;
+        this.objectMapper = objectMapper;
+        this.responseMappers = responseMappers;
     }
 
     @GetMapping
-    public ResponseEntity<VisualizationData> getVisualizationData(
+    public ResponseEntity<?> getVisualizationData(
+            @RequestParam String timeRange,
+            @RequestParam String dimension,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) PeriodComparisonService.Offset compare,
+            @RequestParam(required = false) String since,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (maxPoints != null && maxPoints < TrendDownsampler.MIN_POINTS) {
+            return ResponseEntity.badRequest().body("maxPoints 不能小于 " + TrendDownsampler.MIN_POINTS);
+        }
+        // 带水位线时优先返回增量，水位线失效或变化过多时退回完整数据
+        if (since != null) {
+            VisualizationData delta = visualizationService.getVisualizationDelta(timeRange, dimension, since);
+            if (delta != null) {
+                return ResponseEntity.ok(delta);
+            }
+        }
+        // 区间相对于今天，结束日期参与 ETag，跨天后不返回前一天的结果；版本覆盖对比区间
+        LocalDate[] range = visualizationService.dateRange(timeRange);
+        LocalDate versionStart = compare != null ? compare.shift(range[0], range[1])[0] : range[0];
+        String etag = ConditionalResponseCache.etag("visualization",
+                dataVersionService.rangeVersion(versionStart, range[1]), timeRange, dimension, maxPoints, compare, range[1]);
+        return conditionalResponseCache.respond(ifNoneMatch, accept, etag,
+                () -> analyticsCacheService.getVisualizationData(timeRange, dimension, maxPoints, compare, range[1]));
+    }
+
+    // 明细分页，按 (日期, 产品) 续读
+    @GetMapping("/details")
+    public ResponseEntity<?> getDetails(
+            @RequestParam String timeRange,
+            @RequestParam(required = false) String afterDate,
+            @RequestParam(required = false) String afterProduct,
+            @RequestParam(defaultValue = "" + DataVisualizationService.DEFAULT_DETAIL_PAGE_SIZE) int limit) {
+        try {
+            return ResponseEntity.ok(visualizationService.getDetails(timeRange, afterDate, afterProduct, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    public enum DetailLayout {
+        ROWS,
+        COLUMNAR
+    }
+
+    // 全部明细边读结果集边写响应：默认按 NDJSON 逐行输出；列式布局按 Accept 输出 JSON、CBOR 或 Smile
+    @GetMapping("/details/stream")
+    public ResponseEntity<StreamingResponseBody> streamDetails(
             @RequestParam String timeRange,
-            @RequestParam String dimension) {
-        VisualizationData data = visualizationService.getVisualizationData(timeRange, dimension);
-        return ResponseEntity.ok(data);
+            @RequestParam(defaultValue = "ROWS") DetailLayout layout,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (layout == DetailLayout.COLUMNAR) {
+            return streamColumnarDetails(timeRange, ResponseFormat.fromAccept(accept));
+        }
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+            try {
+                visualizationService.streamDetails(timeRange, item -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(item));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // 客户端断开时结束查询
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamColumnarDetails(String timeRange, ResponseFormat format) {
+        LocalDate startDate = visualizationService.dateRange(timeRange)[0];
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = responseMappers.forFormat(format).getFactory()
+                    .createGenerator(new BufferedOutputStream(outputStream, 64 * 1024));
+            ColumnarDetailWriter writer = new ColumnarDetailWriter(generator, startDate);
+            try {
+                visualizationService.streamDetails(timeRange, item -> {
+                    try {
+                        writer.add(item);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish();
+        };
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.getMediaType())
+                .body(body);
     }
 }
@@ -0,0 +1,58 @@
+package com.example.sales.controller;
+
+import com.example.sales.dto.DimensionValueDTO;
+import com.example.sales.service.dictionary.DimensionDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 筛选下拉框的取值和维度编号转换，全部由内存中的维度字典回答，不查询 sales 表。
+ */
+@Controller
+@RequestMapping("/sales/dimensions")
+public class DimensionController {
+
+    private final DimensionDictionary dimensionDictionary;
+
+    @Autowired
+    public DimensionController(DimensionDictionary dimensionDictionary) {
+        this.dimensionDictionary = dimensionDictionary;
+    }
+
+    // 例：/sales/dimensions/REGION
+    @GetMapping("/{dimension}")
+    @ResponseBody
+    public ResponseEntity<List<DimensionValueDTO>> getValues(@PathVariable DimensionDictionary.Dimension dimension) {
+        return ResponseEntity.ok(dimensionDictionary.values(dimension));
+    }
+
+    // 取值 -> 编号，未出现过的取值对应 null
+    @GetMapping("/{dimension}/ids")
+    @ResponseBody
+    public ResponseEntity<Map<String, Integer>> getIds(@PathVariable DimensionDictionary.Dimension dimension,
+                                                      @RequestParam List<String> values) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (String value : values) {
+            ids.put(value, dimensionDictionary.idOf(dimension, value));
+        }
+        return ResponseEntity.ok(ids);
+    }
+
+    // 编号 -> 取值，未分配的编号对应 null
+    @GetMapping("/{dimension}/values")
+    @ResponseBody
+    public ResponseEntity<Map<Integer, String>> getValuesById(@PathVariable DimensionDictionary.Dimension dimension,
+                                                             @RequestParam List<Integer> ids) {
+        Map<Integer, String> values = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            values.put(id, dimensionDictionary.valueOf(dimension, id));
+        }
+        return ResponseEntity.ok(values);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.sales.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 看板指标推送通道（/ws/kpi）。只向客户端广播，不处理客户端发来的消息。
+ */
+@Slf4j
+@Component
+public class KpiWebSocketHandler extends TextWebSocketHandler {
+
+    // 单个客户端发送超过 1 秒或积压超过 512KB 时断开，慢客户端不拖住其他连接
+    private static final int SEND_TIME_LIMIT_MS = 1000;
+    private static final int BUFFER_SIZE_LIMIT = 512 * 1024;
+
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        sessions.put(session.getId(),
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, BUFFER_SIZE_LIMIT));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+    }
+
+    public boolean hasSubscribers() {
+        return !sessions.isEmpty();
+    }
+
+    public void broadcast(String payload) {
+        TextMessage message = new TextMessage(payload);
+        for (WebSocketSession session : sessions.values()) {
+            try {
+                session.sendMessage(message);
+            } catch (IOException | RuntimeException e) {
+                log.debug("推送到 {} 失败，关闭连接: {}", session.getId(), e.getMessage());
+                sessions.remove(session.getId());
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException ignored) {
+                    // 连接已不可用
+                }
+            }
+        }
+    }
+}
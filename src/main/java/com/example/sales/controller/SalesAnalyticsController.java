@@ -0,0 +1,56 @@
+package com.example.sales.controller;
+
+import com.example.sales.dto.SingleFlightStatsDTO;
+import com.example.sales.service.SalesAnalyticsService;
+import com.example.sales.service.parallel.SingleFlight;
+import com.example.sales.service.rollup.RollupLevel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Controller
+@RequestMapping("/sales/analytics")
+public class SalesAnalyticsController {
+
+    private final SalesAnalyticsService salesAnalyticsService;
+    private final SingleFlight singleFlight;
+
+    @Autowired
+    public SalesAnalyticsController(SalesAnalyticsService salesAnalyticsService, SingleFlight singleFlight) {
+        this.salesAnalyticsService = salesAnalyticsService;
+        this.singleFlight = singleFlight;
+    }
+
+    @GetMapping("/summary")
+    @ResponseBody
+    public ResponseEntity<?> getSummary(
+            @RequestParam(required = false) LocalDate startDate,
+            @RequestParam(required = false) LocalDate endDate,
+            @RequestParam(required = false) RollupLevel granularity,
+            @RequestParam(defaultValue = "50,90,99") List<Double> percentiles) {
+        if (endDate == null) {
+            endDate = LocalDate.now();
+        }
+        // 未指定开始日期时取能完整缓存的最近一段，指定的区间过长时返回 400
+        if (startDate == null) {
+            startDate = endDate.minusDays(salesAnalyticsService.getMaxDays() - 1);
+        }
+
+        try {
+            return ResponseEntity.ok(salesAnalyticsService.analyze(startDate, endDate, granularity, percentiles));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 请求合并统计：各查询的请求数、实际计算次数、合并比例和等待时间
+    @GetMapping("/coalescing")
+    @ResponseBody
+    public ResponseEntity<List<SingleFlightStatsDTO>> getCoalescingStats() {
+        return ResponseEntity.ok(singleFlight.getStats());
+    }
+}
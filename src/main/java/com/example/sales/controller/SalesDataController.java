@@ -1,31 +1,53 @@
 package com.example.sales.controller;
 
 import com.example.sales.dto.RegionSalesDTO;
+import com.example.sales.dto.SalesDTO;
+import com.example.sales.dto.SalesPageDTO;
 import com.example.sales.entity.Sales;
+import com.example.sales.service.AnalyticsCacheService;
 import com.example.sales.service.SalesService;
+import com.example.sales.service.cache.CachedValue;
+import com.example.sales.service.export.SalesExportService;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.annotation.RequiresRoles;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 @Controller
 @RequestMapping("/data/storage")
 
 public class SalesDataController {
 
+    // 偏移分页只用于前几页，更深的位置用 /seek 的游标翻页
+    private static final int MAX_OFFSET_PAGE = 100;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final SalesService salesService;
+    private final AnalyticsCacheService analyticsCacheService;
+    private final SalesExportService salesExportService;
 
     @Autowired
-    public SalesDataController(SalesService salesService) {
+    public SalesDataController(SalesService salesService, AnalyticsCacheService analyticsCacheService,
+                               SalesExportService salesExportService) {
         this.salesService = salesService;
+        this.analyticsCacheService = analyticsCacheService;
+        this.salesExportService = salesExportService;
     }
 
     
@@ -33,7 +55,7 @@ public class SalesDataController {
     @GetMapping("/list")
     @ResponseBody
     @RequiresRoles("USER")
-    public ResponseEntity<Page<Sales>> listSales(
+    public ResponseEntity<Page<SalesDTO>> listSales(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String productName,
@@ -41,7 +63,9 @@ public class SalesDataController {
             @RequestParam(required = false) String endDate,
             @RequestParam(required = false) String salesRegion
     ) {
-
+        if (page >= MAX_OFFSET_PAGE) {
+            return ResponseEntity.badRequest().build();
+        }
         PageRequest pageRequest = PageRequest.of(page, size);
         try {
             LocalDateTime start = null;
@@ -54,17 +78,127 @@ public class SalesDataController {
                     StringUtils.isBlank(endDate) && StringUtils.isBlank(salesRegion)) {
                 return ResponseEntity.ok(salesService.findAll(pageRequest));
             }
-            Page<Sales> salesPage = salesService.findByCondition(productName, salesRegion, start, end, pageRequest);
+            Page<SalesDTO> salesPage = salesService.findByCondition(productName, salesRegion, start, end, pageRequest);
             return ResponseEntity.ok(salesPage);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * 游标翻页：首次请求不带 cursor，之后把返回的 nextCursor 原样传回。
+     * count 为 ESTIMATE 时总数从汇总表估算，EXACT 时对明细表计数，默认不计算。
+     */
+    @GetMapping("/seek")
+    @ResponseBody
+    @RequiresRoles("USER")
+    public ResponseEntity<?> seekSales(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String productName,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String salesRegion,
+            @RequestParam(defaultValue = "NONE") SalesService.CountMode count
+    ) {
+        try {
+            LocalDateTime start = StringUtils.isNotBlank(startDate) ? LocalDateTime.parse(startDate) : null;
+            LocalDateTime end = StringUtils.isNotBlank(endDate) ? LocalDateTime.parse(endDate) : null;
+            SalesPageDTO salesPage = salesService.findPage(StringUtils.trimToNull(productName),
+                    StringUtils.trimToNull(salesRegion), start, end, cursor, size, count);
+            return ResponseEntity.ok(salesPage);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * 导出筛选条件下的全部明细，条件与 /seek 相同；边查询边写入响应，客户端断开时取消查询。
+     * XLSX 在最后才输出文件，无法及时发现断开，行数超过 sales.export.xlsx-max-rows 时失败。
+     */
+    @GetMapping("/export")
+    @RequiresRoles("USER")
+    public ResponseEntity<?> exportSales(
+            @RequestParam(defaultValue = "CSV") SalesExportService.ExportFormat format,
+            @RequestParam(required = false) String productName,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String salesRegion
+    ) {
+        LocalDateTime start;
+        LocalDateTime end;
+        try {
+            start = StringUtils.isNotBlank(startDate) ? LocalDateTime.parse(startDate) : null;
+            end = StringUtils.isNotBlank(endDate) ? LocalDateTime.parse(endDate) : null;
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        String product = StringUtils.trimToNull(productName);
+        String region = StringUtils.trimToNull(salesRegion);
+        StreamingResponseBody body = out -> salesExportService.export(format, product, region, start, end, out);
+
+        String filename = "sales-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + "." + format.getExtension();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .body(body);
+    }
+
+    /**
+     * 以 NDJSON 流式输出筛选条件下的明细，按 id 顺序，一次请求读完全部结果，没有计数和偏移扫描。
+     * fields 为逗号分隔的字段名，id 总是输出；中断后把收到的最后一个 id 作为 afterId 续传。
+     * Accept-Encoding 含 gzip 时压缩输出。
+     */
+    @GetMapping("/stream")
+    @RequiresRoles("USER")
+    public ResponseEntity<?> streamSales(
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(required = false) String productName,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String salesRegion,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        Set<SalesExportService.SalesField> selected;
+        LocalDateTime start;
+        LocalDateTime end;
+        try {
+            selected = SalesExportService.SalesField.parse(fields);
+            start = StringUtils.isNotBlank(startDate) ? LocalDateTime.parse(startDate) : null;
+            end = StringUtils.isNotBlank(endDate) ? LocalDateTime.parse(endDate) : null;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        String product = StringUtils.trimToNull(productName);
+        String region = StringUtils.trimToNull(salesRegion);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                salesExportService.writeNdjson(product, region, start, end, afterId, selected, compressed);
+                compressed.finish();
+            } else {
+                salesExportService.writeNdjson(product, region, start, end, afterId, selected, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/byRegion")
     public ResponseEntity<List<RegionSalesDTO>> getSalesByRegion() {
-        List<RegionSalesDTO> salesData = salesService.getSalesByRegion();
-        return ResponseEntity.ok(salesData);
+        CachedValue<List<RegionSalesDTO>> salesData = analyticsCacheService.getSalesByRegion();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.AGE, String.valueOf(salesData.getAgeSeconds()))
+                .body(salesData.getValue());
     }
 
     @PostMapping
@@ -1,29 +1,50 @@
 package com.example.sales.controller;
 
+import com.example.sales.service.AnalyticsCacheService;
+import com.example.sales.service.DataVersionService;
 import com.example.sales.service.SalesService;
-import com.example.sales.dto.SalesOverviewDTO;
+import com.example.sales.service.PeriodComparisonService;
+import com.example.sales.service.ProductLeaderboardService;
+import com.example.sales.service.series.TrendDownsampler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.stereotype.Controller;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import java.time.LocalDate;
+import java.util.List;
 
 @Controller
 @RequestMapping("/sales/overview")
 public class SalesOverviewController {
 
     private final SalesService salesService;
+    private final AnalyticsCacheService analyticsCacheService;
+    private final DataVersionService dataVersionService;
+    private final ConditionalResponseCache conditionalResponseCache;
 
     @Autowired
-    public SalesOverviewController(SalesService salesService) {
+    public SalesOverviewController(SalesService salesService, AnalyticsCacheService analyticsCacheService,
+                                   DataVersionService dataVersionService,
+                                   ConditionalResponseCache conditionalResponseCache) {
         this.salesService = salesService;
+        this.analyticsCacheService = analyticsCacheService;
+        this.dataVersionService = dataVersionService;
+        this.conditionalResponseCache = conditionalResponseCache;
     }
 
     @GetMapping("/dashboard")
     @ResponseBody
-    public ResponseEntity<SalesOverviewDTO> getDashboardData(
+    public ResponseEntity<?> getDashboardData(
             @RequestParam(required = false) LocalDate startDate,
-            @RequestParam(required = false) LocalDate endDate) {
+            @RequestParam(required = false) LocalDate endDate,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) PeriodComparisonService.Offset compare,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (maxPoints != null && maxPoints < TrendDownsampler.MIN_POINTS) {
+            return ResponseEntity.badRequest().body("maxPoints 不能小于 " + TrendDownsampler.MIN_POINTS);
+        }
         if (startDate == null) {
             startDate = LocalDate.ofEpochDay(0); // 设置为时间起始点
         }
@@ -31,8 +52,37 @@ public class SalesOverviewController {
             endDate = LocalDate.now().minusDays(1); // 设置为昨天
         }
 
-        SalesOverviewDTO overview = salesService.getSalesOverview(startDate, endDate);
-        return ResponseEntity.ok(overview);
+        // 版本覆盖对比区间，对比区间在当前区间之前
+        LocalDate versionStart = compare != null ? compare.shift(startDate, endDate)[0] : startDate;
+        String etag = ConditionalResponseCache.etag("salesOverview",
+                dataVersionService.rangeVersion(versionStart, endDate), startDate, endDate, maxPoints, compare);
+        LocalDate start = startDate;
+        LocalDate end = endDate;
+        return conditionalResponseCache.respond(ifNoneMatch, accept, etag,
+                () -> analyticsCacheService.getSalesOverview(start, end, maxPoints, compare));
+    }
+
+    @GetMapping("/top-products")
+    @ResponseBody
+    public ResponseEntity<?> getTopProducts(
+            @RequestParam(required = false) LocalDate startDate,
+            @RequestParam(required = false) LocalDate endDate,
+            @RequestParam(required = false) String region,
+            @RequestParam(defaultValue = "REVENUE") ProductLeaderboardService.Metric metric,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        if (startDate == null) {
+            startDate = LocalDate.ofEpochDay(0);
+        }
+        if (endDate == null) {
+            endDate = LocalDate.now();
+        }
+
+        try {
+            return ResponseEntity.ok(salesService.getTopSellingProducts(startDate, endDate, region, metric, limit, exact));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
            
     
@@ -0,0 +1,54 @@
+package com.example.sales.controller;
+
+import com.example.sales.dto.SalesQueryDTO;
+import com.example.sales.service.pivot.PivotDimension;
+import com.example.sales.service.pivot.PivotMeasure;
+import com.example.sales.service.pivot.PivotQuery;
+import com.example.sales.service.pivot.PivotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@Controller
+@RequestMapping("/sales/pivot")
+public class SalesPivotController {
+
+    private final PivotService pivotService;
+
+    @Autowired
+    public SalesPivotController(PivotService pivotService) {
+        this.pivotService = pivotService;
+    }
+
+    /**
+     * 例：/sales/pivot?dimensions=REGION,MONTH&amp;measures=AMOUNT,COUNT&amp;startDate=2024-01-01&amp;endDate=2024-06-30
+     */
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<?> pivot(
+            @RequestParam(required = false) List<PivotDimension> dimensions,
+            @RequestParam(defaultValue = "AMOUNT") List<PivotMeasure> measures,
+            @ModelAttribute SalesQueryDTO filter) {
+        LocalDate startDate = filter.getStartDate() != null ? toLocalDate(filter.getStartDate()) : LocalDate.ofEpochDay(0);
+        LocalDate endDate = filter.getEndDate() != null ? toLocalDate(filter.getEndDate()) : LocalDate.now();
+
+        try {
+            PivotQuery query = new PivotQuery(dimensions != null ? dimensions : new ArrayList<>(), measures,
+                    startDate, endDate, filter.getProductName(), filter.getSalesRegion());
+            return ResponseEntity.ok(pivotService.pivot(query));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
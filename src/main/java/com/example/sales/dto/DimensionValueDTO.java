@@ -0,0 +1,52 @@
+package com.example.sales.dto;
+
+/**
+ * 维度字典中的一个取值。id 为紧凑整数编号，firstDate、lastDate 为首末销售日期，rowCount 为订单数。
+ */
+public class DimensionValueDTO {
+    private Integer id;
+    private String value;
+    private String firstDate;
+    private String lastDate;
+    private Long rowCount;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getFirstDate() {
+        return firstDate;
+    }
+
+    public void setFirstDate(String firstDate) {
+        this.firstDate = firstDate;
+    }
+
+    public String getLastDate() {
+        return lastDate;
+    }
+
+    public void setLastDate(String lastDate) {
+        this.lastDate = lastDate;
+    }
+
+    public Long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(Long rowCount) {
+        this.rowCount = rowCount;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.sales.dto;
+
+/**
+ * 导出目录中的一个列式文件。partition 为月份（yyyy-MM）或导入批次号，path 相对于导出目录。
+ * 开启 Parquet 导出时 parquetPath、parquetBytes 为同名 Parquet 文件的路径和大小，否则为空。
+ */
+public class ExportFileDTO {
+    private String partition;
+    private String path;
+    private Long rows;
+    private Long bytes;
+    private String parquetPath;
+    private Long parquetBytes;
+
+    public String getPartition() {
+        return partition;
+    }
+
+    public void setPartition(String partition) {
+        this.partition = partition;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public Long getRows() {
+        return rows;
+    }
+
+    public void setRows(Long rows) {
+        this.rows = rows;
+    }
+
+    public Long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(Long bytes) {
+        this.bytes = bytes;
+    }
+
+    public String getParquetPath() {
+        return parquetPath;
+    }
+
+    public void setParquetPath(String parquetPath) {
+        this.parquetPath = parquetPath;
+    }
+
+    public Long getParquetBytes() {
+        return parquetBytes;
+    }
+
+    public void setParquetBytes(Long parquetBytes) {
+        this.parquetBytes = parquetBytes;
+    }
+}
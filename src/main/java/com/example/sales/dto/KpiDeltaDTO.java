@@ -0,0 +1,66 @@
+package com.example.sales.dto;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 推送给看板的指标增量。字段与 SalesOverviewDTO 对应：合计和区域为差值，
+ * salesTrend 为受影响日期当天的最新销售额（绝对值）。sequence 连续递增，客户端发现缺号时应重新拉取概览。
+ */
+public class KpiDeltaDTO {
+    private Long sequence;
+    private String generatedAt;
+    private BigDecimal totalSalesDelta;
+    private Long totalOrdersDelta;
+    private Map<String, BigDecimal> salesByRegionDelta = new LinkedHashMap<>();
+    private Map<String, BigDecimal> salesTrend = new LinkedHashMap<>();
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public void setGeneratedAt(String generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+
+    public BigDecimal getTotalSalesDelta() {
+        return totalSalesDelta;
+    }
+
+    public void setTotalSalesDelta(BigDecimal totalSalesDelta) {
+        this.totalSalesDelta = totalSalesDelta;
+    }
+
+    public Long getTotalOrdersDelta() {
+        return totalOrdersDelta;
+    }
+
+    public void setTotalOrdersDelta(Long totalOrdersDelta) {
+        this.totalOrdersDelta = totalOrdersDelta;
+    }
+
+    public Map<String, BigDecimal> getSalesByRegionDelta() {
+        return salesByRegionDelta;
+    }
+
+    public void setSalesByRegionDelta(Map<String, BigDecimal> salesByRegionDelta) {
+        this.salesByRegionDelta = salesByRegionDelta;
+    }
+
+    public Map<String, BigDecimal> getSalesTrend() {
+        return salesTrend;
+    }
+
+    public void setSalesTrend(Map<String, BigDecimal> salesTrend) {
+        this.salesTrend = salesTrend;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.sales.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 两个区间的对比结果。增长率为百分比，对比区间值为 0 时为 null。
+ */
+public class PeriodComparisonDTO {
+    private String offset;
+    private LocalDate currentStart;
+    private LocalDate currentEnd;
+    private LocalDate previousStart;
+    private LocalDate previousEnd;
+    private Item total;
+    private List<Item> byRegion = new ArrayList<>();
+    private List<Item> byProduct = new ArrayList<>();
+
+    public static class Item {
+        private String name;
+        private BigDecimal currentAmount;
+        private BigDecimal previousAmount;
+        private BigDecimal amountDelta;
+        private Double amountGrowthRate;
+        private Long currentQuantity;
+        private Long previousQuantity;
+        private Long quantityDelta;
+        private Double quantityGrowthRate;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public BigDecimal getCurrentAmount() {
+            return currentAmount;
+        }
+
+        public void setCurrentAmount(BigDecimal currentAmount) {
+            this.currentAmount = currentAmount;
+        }
+
+        public BigDecimal getPreviousAmount() {
+            return previousAmount;
+        }
+
+        public void setPreviousAmount(BigDecimal previousAmount) {
+            this.previousAmount = previousAmount;
+        }
+
+        public BigDecimal getAmountDelta() {
+            return amountDelta;
+        }
+
+        public void setAmountDelta(BigDecimal amountDelta) {
+            this.amountDelta = amountDelta;
+        }
+
+        public Double getAmountGrowthRate() {
+            return amountGrowthRate;
+        }
+
+        public void setAmountGrowthRate(Double amountGrowthRate) {
+            this.amountGrowthRate = amountGrowthRate;
+        }
+
+        public Long getCurrentQuantity() {
+            return currentQuantity;
+        }
+
+        public void setCurrentQuantity(Long currentQuantity) {
+            this.currentQuantity = currentQuantity;
+        }
+
+        public Long getPreviousQuantity() {
+            return previousQuantity;
+        }
+
+        public void setPreviousQuantity(Long previousQuantity) {
+            this.previousQuantity = previousQuantity;
+        }
+
+        public Long getQuantityDelta() {
+            return quantityDelta;
+        }
+
+        public void setQuantityDelta(Long quantityDelta) {
+            this.quantityDelta = quantityDelta;
+        }
+
+        public Double getQuantityGrowthRate() {
+            return quantityGrowthRate;
+        }
+
+        public void setQuantityGrowthRate(Double quantityGrowthRate) {
+            this.quantityGrowthRate = quantityGrowthRate;
+        }
+    }
+
+    public String getOffset() {
+        return offset;
+    }
+
+    public void setOffset(String offset) {
+        this.offset = offset;
+    }
+
+    public LocalDate getCurrentStart() {
+        return currentStart;
+    }
+
+    public void setCurrentStart(LocalDate currentStart) {
+        this.currentStart = currentStart;
+    }
+
+    public LocalDate getCurrentEnd() {
+        return currentEnd;
+    }
+
+    public void setCurrentEnd(LocalDate currentEnd) {
+        this.currentEnd = currentEnd;
+    }
+
+    public LocalDate getPreviousStart() {
+        return previousStart;
+    }
+
+    public void setPreviousStart(LocalDate previousStart) {
+        this.previousStart = previousStart;
+    }
+
+    public LocalDate getPreviousEnd() {
+        return previousEnd;
+    }
+
+    public void setPreviousEnd(LocalDate previousEnd) {
+        this.previousEnd = previousEnd;
+    }
+
+    public Item getTotal() {
+        return total;
+    }
+
+    public void setTotal(Item total) {
+        this.total = total;
+    }
+
+    public List<Item> getByRegion() {
+        return byRegion;
+    }
+
+    public void setByRegion(List<Item> byRegion) {
+        this.byRegion = byRegion;
+    }
+
+    public List<Item> getByProduct() {
+        return byProduct;
+    }
+
+    public void setByProduct(List<Item> byProduct) {
+        this.byProduct = byProduct;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.sales.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列式透视结果：columns 为列名（先维度后度量），data 与之一一对应，每列一个值数组。
+ */
+public class PivotResultDTO {
+    private String plan;
+    private int rowCount;
+    private List<String> columns = new ArrayList<>();
+    private List<List<Object>> data = new ArrayList<>();
+
+    public PivotResultDTO() {}
+
+    public PivotResultDTO(String plan, int rowCount, List<String> columns, List<List<Object>> data) {
+        this.plan = plan;
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.data = data;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<List<Object>> getData() {
+        return data;
+    }
+
+    public void setData(List<List<Object>> data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.sales.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 产品排行项。精确模式下 quantity/revenue 为汇总表中的真实值；
+ * 近似模式下只有排序指标的估计值及其上下界。
+ */
+public class ProductRankDTO {
+    private String productName;
+    private Long quantity;
+    private BigDecimal revenue;
+    private Double estimate;
+    private Double lowerBound;
+    private Double upperBound;
+    private boolean exact;
+
+    public ProductRankDTO() {}
+
+    public ProductRankDTO(String productName, Double estimate, Double lowerBound, Double upperBound) {
+        this.productName = productName;
+        this.estimate = estimate;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.exact = false;
+    }
+
+    public ProductRankDTO(String productName, Long quantity, BigDecimal revenue, Double value) {
+        this.productName = productName;
+        this.quantity = quantity;
+        this.revenue = revenue;
+        this.estimate = value;
+        this.lowerBound = value;
+        this.upperBound = value;
+        this.exact = true;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Long quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+
+    public Double getEstimate() {
+        return estimate;
+    }
+
+    public void setEstimate(Double estimate) {
+        this.estimate = estimate;
+    }
+
+    public Double getLowerBound() {
+        return lowerBound;
+    }
+
+    public void setLowerBound(Double lowerBound) {
+        this.lowerBound = lowerBound;
+    }
+
+    public Double getUpperBound() {
+        return upperBound;
+    }
+
+    public void setUpperBound(Double upperBound) {
+        this.upperBound = upperBound;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+}
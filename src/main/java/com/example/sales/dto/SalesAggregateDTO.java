@@ -0,0 +1,64 @@
+package com.example.sales.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 分组聚合结果行，未参与分组的维度为 null。
+ */
+public class SalesAggregateDTO {
+    private String region;
+    private String productName;
+    private LocalDate period;
+    private BigDecimal totalAmount;
+    private Long quantity;
+    private Long orderCount;
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public LocalDate getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(LocalDate period) {
+        this.period = period;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Long quantity) {
+        this.quantity = quantity;
+    }
+
+    public Long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(Long orderCount) {
+        this.orderCount = orderCount;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.sales.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 区间分析指标。去重计数和分位数来自摘要，为近似值；distinctRelativeError 为去重计数的标准误差。
+ */
+public class SalesAnalyticsDTO {
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
+    private Long orderCount;
+    private Long uniqueProducts;
+    private Long activeRegions;
+    private Double distinctRelativeError;
+    private Map<String, BigDecimal> orderValuePercentiles = new LinkedHashMap<>();
+
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(LocalDate periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public LocalDate getPeriodEnd() {
+        return periodEnd;
+    }
+
+    public void setPeriodEnd(LocalDate periodEnd) {
+        this.periodEnd = periodEnd;
+    }
+
+    public Long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(Long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public Long getUniqueProducts() {
+        return uniqueProducts;
+    }
+
+    public void setUniqueProducts(Long uniqueProducts) {
+        this.uniqueProducts = uniqueProducts;
+    }
+
+    public Long getActiveRegions() {
+        return activeRegions;
+    }
+
+    public void setActiveRegions(Long activeRegions) {
+        this.activeRegions = activeRegions;
+    }
+
+    public Double getDistinctRelativeError() {
+        return distinctRelativeError;
+    }
+
+    public void setDistinctRelativeError(Double distinctRelativeError) {
+        this.distinctRelativeError = distinctRelativeError;
+    }
+
+    public Map<String, BigDecimal> getOrderValuePercentiles() {
+        return orderValuePercentiles;
+    }
+
+    public void setOrderValuePercentiles(Map<String, BigDecimal> orderValuePercentiles) {
+        this.orderValuePercentiles = orderValuePercentiles;
+    }
+}
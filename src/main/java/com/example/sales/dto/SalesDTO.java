@@ -3,15 +3,33 @@ package com.example.sales.dto;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * 销售记录列表和搜索的只读投影。由 JPQL 构造表达式直接生成，只读取展示的列，
+ * 不是托管实体，不参与脏检查，也不会触发 customer 的延迟加载。字段名与 Sales 实体一致。
+ */
 public class SalesDTO {
     private Long id;
     private LocalDateTime salesDate;
     private String productName;
     private String salesRegion;
-    private Integer quantity;
+    private Integer salesQuantity;
     private BigDecimal unitPrice;
     private BigDecimal totalAmount;
 
+    public SalesDTO() {
+    }
+
+    public SalesDTO(Long id, LocalDateTime salesDate, String productName, String salesRegion,
+                    Integer salesQuantity, BigDecimal unitPrice, BigDecimal totalAmount) {
+        this.id = id;
+        this.salesDate = salesDate;
+        this.productName = productName;
+        this.salesRegion = salesRegion;
+        this.salesQuantity = salesQuantity;
+        this.unitPrice = unitPrice;
+        this.totalAmount = totalAmount;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -45,12 +63,12 @@ public class SalesDTO {
         this.salesRegion = salesRegion;
     }
 
-    public Integer getQuantity() {
-        return quantity;
+    public Integer getSalesQuantity() {
+        return salesQuantity;
     }
 
-    public void setQuantity(Integer quantity) {
-        this.quantity = quantity;
+    public void setSalesQuantity(Integer salesQuantity) {
+        this.salesQuantity = salesQuantity;
     }
 
     public BigDecimal getUnitPrice() {
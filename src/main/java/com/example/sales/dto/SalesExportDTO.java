@@ -0,0 +1,36 @@
+package com.example.sales.dto;
+
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.annotation.format.DateTimeFormat;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 导出的一行，前五列与导入模板一致，导出的文件可以直接再导入。
+ */
+@Data
+public class SalesExportDTO {
+    @ExcelProperty("产品名称")
+    private String productName;
+
+    @ExcelProperty("销售区域")
+    private String salesRegion;
+
+    @ExcelProperty("销售日期")
+    @DateTimeFormat("yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime salesDate;
+
+    @ExcelProperty("销售数量")
+    private Integer salesQuantity;
+
+    @ExcelProperty("销售单价")
+    private BigDecimal unitPrice;
+
+    @ExcelProperty("销售金额")
+    private BigDecimal totalAmount;
+
+    @ExcelProperty("记录编号")
+    private Long id;
+}
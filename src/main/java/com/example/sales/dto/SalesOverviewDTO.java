@@ -13,9 +13,19 @@ public class SalesOverviewDTO {
     private Map<String, BigDecimal> salesTrend;
 
     private Double growthRate;
+    // 指定对比方式时返回，growthRate 取其中合计销售额的增长率
+    private PeriodComparisonDTO comparison;
 
     public SalesOverviewDTO() {}
 
+    public PeriodComparisonDTO getComparison() {
+        return comparison;
+    }
+
+    public void setComparison(PeriodComparisonDTO comparison) {
+        this.comparison = comparison;
+    }
+
     public Double getGrowthRate() {
         return growthRate;
     }
@@ -0,0 +1,55 @@
+package com.example.sales.dto;
+
+import java.util.List;
+
+/**
+ * 游标翻页的一页销售记录。hasMore 为 true 时把 nextCursor 作为下一次请求的 cursor；
+ * total 只在请求计数时返回，totalEstimated 为 true 表示来自汇总表的估算值。
+ */
+public class SalesPageDTO {
+    private List<SalesDTO> content;
+    private Boolean hasMore;
+    private String nextCursor;
+    private Long total;
+    private Boolean totalEstimated;
+
+    public List<SalesDTO> getContent() {
+        return content;
+    }
+
+    public void setContent(List<SalesDTO> content) {
+        this.content = content;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public Boolean getTotalEstimated() {
+        return totalEstimated;
+    }
+
+    public void setTotalEstimated(Boolean totalEstimated) {
+        this.totalEstimated = totalEstimated;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.sales.dto;
+
+/**
+ * 单个查询的请求合并统计。coalescingRatio 为共享他人计算结果的请求占比，等待时间只统计被合并的请求。
+ */
+public class SingleFlightStatsDTO {
+    private String operation;
+    private Long requests;
+    private Long executions;
+    private Long coalesced;
+    private Double coalescingRatio;
+    private Double averageWaitMillis;
+    private Double maxWaitMillis;
+    private Integer inFlight;
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public Long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(Long requests) {
+        this.requests = requests;
+    }
+
+    public Long getExecutions() {
+        return executions;
+    }
+
+    public void setExecutions(Long executions) {
+        this.executions = executions;
+    }
+
+    public Long getCoalesced() {
+        return coalesced;
+    }
+
+    public void setCoalesced(Long coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public Double getCoalescingRatio() {
+        return coalescingRatio;
+    }
+
+    public void setCoalescingRatio(Double coalescingRatio) {
+        this.coalescingRatio = coalescingRatio;
+    }
+
+    public Double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    public void setAverageWaitMillis(Double averageWaitMillis) {
+        this.averageWaitMillis = averageWaitMillis;
+    }
+
+    public Double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(Double maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public Integer getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(Integer inFlight) {
+        this.inFlight = inFlight;
+    }
+}
@@ -9,7 +9,14 @@ public class VisualizationData {
     private List<Double> revenue;
     private List<Double> profit;
     private List<SummaryItem> summary;
-    private List<DetailItem> details;
+    private PeriodComparisonDTO comparison;
+    // 数据版本水位线，下次请求作为 since 传回即可只取变化部分
+    private String watermark;
+    // 为 true 时只包含水位线之后变化过的日期：序列为这些日期的当天值（0 表示当天已无数据），
+    // summary 为 null 表示未变化；这些日期的明细通过明细接口重新读取
+    private Boolean delta;
+    // 窗口起始日期，早于该日期的已缓存数据可丢弃
+    private String startDate;
 
     public static class SummaryItem {
         private String name;
@@ -80,6 +87,14 @@ public class VisualizationData {
         }
     }
 
+    public PeriodComparisonDTO getComparison() {
+        return comparison;
+    }
+
+    public void setComparison(PeriodComparisonDTO comparison) {
+        this.comparison = comparison;
+    }
+
     public List<String> getDates() {
         return dates;
     }
@@ -120,11 +135,27 @@ public class VisualizationData {
         this.summary = summary;
     }
 
-    public List<DetailItem> getDetails() {
-        return details;
+    public String getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(String watermark) {
+        this.watermark = watermark;
+    }
+
+    public Boolean getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Boolean delta) {
+        this.delta = delta;
+    }
+
+    public String getStartDate() {
+        return startDate;
     }
 
-    public void setDetails(List<DetailItem> details) {
-        this.details = details;
+    public void setStartDate(String startDate) {
+        this.startDate = startDate;
     }
 }
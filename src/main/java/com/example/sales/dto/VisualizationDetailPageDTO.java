@@ -0,0 +1,45 @@
+package com.example.sales.dto;
+
+import java.util.List;
+
+/**
+ * 可视化明细的一页。hasMore 为 true 时把 nextAfterDate、nextAfterProduct 作为下一次请求的 afterDate、afterProduct。
+ */
+public class VisualizationDetailPageDTO {
+    private List<VisualizationData.DetailItem> items;
+    private Boolean hasMore;
+    private String nextAfterDate;
+    private String nextAfterProduct;
+
+    public List<VisualizationData.DetailItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<VisualizationData.DetailItem> items) {
+        this.items = items;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public String getNextAfterDate() {
+        return nextAfterDate;
+    }
+
+    public void setNextAfterDate(String nextAfterDate) {
+        this.nextAfterDate = nextAfterDate;
+    }
+
+    public String getNextAfterProduct() {
+        return nextAfterProduct;
+    }
+
+    public void setNextAfterProduct(String nextAfterProduct) {
+        this.nextAfterProduct = nextAfterProduct;
+    }
+}
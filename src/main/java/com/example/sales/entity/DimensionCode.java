@@ -0,0 +1,58 @@
+package com.example.sales.entity;
+
+import javax.persistence.*;
+
+/**
+ * 维度字典的编号分配（REGION/PRODUCT）。编号从 0 起连续分配，一经写入不再修改，重启后按此恢复。
+ */
+@Entity
+@Table(name = "dimension_code", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_dimension_code", columnNames = {"dimension", "code"}),
+    @UniqueConstraint(name = "uk_dimension_value", columnNames = {"dimension", "value"})
+})
+public class DimensionCode {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "dimension", nullable = false, length = 10)
+    private String dimension;
+
+    @Column(name = "code", nullable = false)
+    private Integer code;
+
+    @Column(name = "value", nullable = false, length = 100)
+    private String value;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+
+    public Integer getCode() {
+        return code;
+    }
+
+    public void setCode(Integer code) {
+        this.code = code;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
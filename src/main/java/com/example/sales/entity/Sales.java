@@ -2,11 +2,16 @@ package com.example.sales.entity;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "sales", indexes = {
     @Index(name = "idx_sales_date", columnList = "sales_date"),
+    @Index(name = "idx_sales_date_region_cover", columnList = "sales_date, sales_region, total_amount, sales_quantity"),
+    @Index(name = "idx_sales_date_product_cover", columnList = "sales_date, product_name, sales_quantity, total_amount"),
+    @Index(name = "idx_sales_day_product_cover", columnList = "sales_day, product_name, sales_quantity, total_amount, unit_price"),
+    @Index(name = "idx_sales_month_region_cover", columnList = "sales_month, sales_region, total_amount, sales_quantity"),
     @Index(name = "idx_product_name", columnList = "product_name"),
     @Index(name = "idx_import_id", columnList = "import_id")
 })
@@ -18,6 +23,15 @@ public class Sales {
     @Column(name = "sales_date", nullable = false)
     private LocalDateTime salesDate;
 
+    // 由数据库根据 sales_date 生成，只读
+    @Column(name = "sales_day", insertable = false, updatable = false,
+            columnDefinition = "DATE GENERATED ALWAYS AS (DATE(sales_date)) STORED")
+    private LocalDate salesDay;
+
+    @Column(name = "sales_month", insertable = false, updatable = false,
+            columnDefinition = "DATE GENERATED ALWAYS AS (DATE_SUB(DATE(sales_date), INTERVAL DAYOFMONTH(sales_date) - 1 DAY)) STORED")
+    private LocalDate salesMonth;
+
     @Column(name = "product_name", nullable = false, length = 100)
     private String productName;
 
@@ -67,6 +81,14 @@ public class Sales {
         this.salesDate = salesDate;
     }
 
+    public LocalDate getSalesDay() {
+        return salesDay;
+    }
+
+    public LocalDate getSalesMonth() {
+        return salesMonth;
+    }
+
     public String getProductName() {
         return productName;
     }
@@ -0,0 +1,17 @@
+package com.example.sales.event;
+
+/**
+ * 一次文件导入处理结束（不论是否有失败行）后发布，此时各批次均已提交。
+ */
+public class ImportCompletedEvent {
+
+    private final String importId;
+
+    public ImportCompletedEvent(String importId) {
+        this.importId = importId;
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+}
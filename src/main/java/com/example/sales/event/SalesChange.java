@@ -0,0 +1,91 @@
+package com.example.sales.event;
+
+import com.example.sales.entity.Sales;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 单条销售记录的增量（新增为正，删除为负，更新拆成一删一增）。
+ */
+public class SalesChange {
+
+    // 利润口径与统计 SQL 一致：total_amount - unit_price * sales_quantity * 0.7
+    public static final BigDecimal COST_RATIO = new BigDecimal("0.7");
+
+    private final LocalDateTime salesDate;
+    private final String productName;
+    private final String salesRegion;
+    private final long quantity;
+    private final BigDecimal totalAmount;
+    private final BigDecimal profit;
+    private final int orderCount;
+
+    public SalesChange(LocalDateTime salesDate, String productName, String salesRegion,
+                       long quantity, BigDecimal totalAmount, BigDecimal profit, int orderCount) {
+        this.salesDate = salesDate;
+        this.productName = productName;
+        this.salesRegion = salesRegion;
+        this.quantity = quantity;
+        this.totalAmount = totalAmount;
+        this.profit = profit;
+        this.orderCount = orderCount;
+    }
+
+    public static SalesChange added(Sales sales) {
+        return of(sales, 1);
+    }
+
+    public static SalesChange removed(Sales sales) {
+        return of(sales, -1);
+    }
+
+    private static SalesChange of(Sales sales, int sign) {
+        long quantity = sales.getSalesQuantity() != null ? sales.getSalesQuantity() : 0;
+        BigDecimal totalAmount = sales.getTotalAmount() != null ? sales.getTotalAmount() : BigDecimal.ZERO;
+        BigDecimal unitPrice = sales.getUnitPrice() != null ? sales.getUnitPrice() : BigDecimal.ZERO;
+        BigDecimal profit = totalAmount.subtract(
+                unitPrice.multiply(BigDecimal.valueOf(quantity)).multiply(COST_RATIO));
+        BigDecimal factor = BigDecimal.valueOf(sign);
+        return new SalesChange(
+                sales.getSalesDate(),
+                sales.getProductName(),
+                sales.getSalesRegion(),
+                quantity * sign,
+                totalAmount.multiply(factor),
+                profit.multiply(factor),
+                sign);
+    }
+
+    public LocalDateTime getSalesDate() {
+        return salesDate;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getSalesRegion() {
+        return salesRegion;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public BigDecimal getProfit() {
+        return profit;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public boolean isRemoval() {
+        return orderCount < 0;
+    }
+}
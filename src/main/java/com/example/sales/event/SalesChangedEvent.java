@@ -0,0 +1,34 @@
+package com.example.sales.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 销售数据写入事件，由 SalesService 的各写入路径在事务内发布。
+ */
+public class SalesChangedEvent {
+
+    private final List<SalesChange> changes;
+    private final String importId;
+
+    public SalesChangedEvent(List<SalesChange> changes) {
+        this(changes, null);
+    }
+
+    public SalesChangedEvent(List<SalesChange> changes, String importId) {
+        this.changes = Collections.unmodifiableList(changes);
+        this.importId = importId;
+    }
+
+    public List<SalesChange> getChanges() {
+        return changes;
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public boolean isImport() {
+        return importId != null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.sales.event;
+
+/**
+ * 汇总表对账发现不一致、按 sales 表修正并提交后发布。修正可能改变任意日期的汇总，依赖汇总或明细的缓存应全部失效。
+ */
+public class SalesRollupRebuiltEvent {
+
+    private final long driftedKeys;
+
+    public SalesRollupRebuiltEvent(long driftedKeys) {
+        this.driftedKeys = driftedKeys;
+    }
+
+    /**
+     * 修正前与 sales 表不一致的（日期, 产品, 区域）组合数。
+     */
+    public long getDriftedKeys() {
+        return driftedKeys;
+    }
+}
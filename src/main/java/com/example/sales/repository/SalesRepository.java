@@ -1,6 +1,7 @@
 package com.example.sales.repository;
 
 import com.example.sales.dto.RegionalSalesStats;
+import com.example.sales.dto.SalesDTO;
 import com.example.sales.entity.Sales;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,123 +12,137 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 @Repository
 public interface SalesRepository extends JpaRepository<Sales, Long>, JpaSpecificationExecutor<Sales> {
+
+    // 列表和搜索只读取展示的列，构造成 SalesDTO，不加载实体
+    String SUMMARY_SELECT = "SELECT new com.example.sales.dto.SalesDTO(s.id, s.salesDate, s.productName, " +
+            "s.salesRegion, s.salesQuantity, s.unitPrice, s.totalAmount) FROM Sales s ";
     
     // 分页查询所有销售记录
     Page<Sales> findAll(Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT COUNT(s) FROM Sales s")
+    Page<SalesDTO> findSummaries(Pageable pageable);
     
-    // 按产品名称分页查询
-    Page<Sales> findByProductNameContainingAndSalesRegion(String productName, String salesRegion,Pageable pageable);
+    // 按产品名称分页查询，名称由 ProductNameIndex 解析包含匹配得到；salesRegion 为 null 时不按区域过滤
+    @Query(value = SUMMARY_SELECT + "WHERE s.productName IN :productNames " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion)",
+            countQuery = "SELECT COUNT(s) FROM Sales s WHERE s.productName IN :productNames " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion)")
+    Page<SalesDTO> findByProductNameInAndSalesRegion(
+            @Param("productNames") Collection<String> productNames,
+            @Param("salesRegion") String salesRegion,
+            Pageable pageable);
+
+    // 匹配的产品名称过多时按关键字包含匹配
+    @Query(value = SUMMARY_SELECT + "WHERE s.productName LIKE CONCAT('%', :keyword, '%') " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion)",
+            countQuery = "SELECT COUNT(s) FROM Sales s WHERE s.productName LIKE CONCAT('%', :keyword, '%') " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion)")
+    Page<SalesDTO> findByProductNameContainingAndSalesRegion(
+            @Param("keyword") String keyword,
+            @Param("salesRegion") String salesRegion,
+            Pageable pageable);
     
     // 按日期范围分页查询
-    Page<Sales> findBySalesDateBetween(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable);
+    @Query(value = SUMMARY_SELECT + "WHERE s.salesDate BETWEEN :startDate AND :endDate",
+            countQuery = "SELECT COUNT(s) FROM Sales s WHERE s.salesDate BETWEEN :startDate AND :endDate")
+    Page<SalesDTO> findBySalesDateBetween(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            Pageable pageable);
 
-    Page<Sales> findByProductNameAndCreatedAtBetweenAndSalesRegion(String productName, LocalDateTime createdAtAfter, LocalDateTime createdAtBefore, String salesRegion, Pageable pageable);
+    // salesRegion 为 null 时不按区域过滤
+    @Query(value = SUMMARY_SELECT + "WHERE s.productName = :productName " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion) " +
+            "AND s.createdAt BETWEEN :createdAtAfter AND :createdAtBefore",
+            countQuery = "SELECT COUNT(s) FROM Sales s WHERE s.productName = :productName " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion) " +
+            "AND s.createdAt BETWEEN :createdAtAfter AND :createdAtBefore")
+    Page<SalesDTO> findByProductNameAndCreatedAtBetweenAndSalesRegion(
+            @Param("productName") String productName,
+            @Param("createdAtAfter") LocalDateTime createdAtAfter,
+            @Param("createdAtBefore") LocalDateTime createdAtBefore,
+            @Param("salesRegion") String salesRegion,
+            Pageable pageable);
     
-    // 统计特定日期范围内的销售总额
-    @Query("SELECT SUM(s.unitPrice * s.salesQuantity) FROM Sales s WHERE s.salesDate BETWEEN :startDate AND :endDate")
+    // 统计特定日期范围内的销售总额（total_amount 即单价×数量，走 idx_sales_date_product_cover 只扫索引）
+    @Query("SELECT SUM(s.totalAmount) FROM Sales s WHERE s.salesDate BETWEEN :startDate AND :endDate")
     Double calculateTotalSalesAmount(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT s FROM Sales s " +
-            "WHERE (:productName IS NULL OR s.productName LIKE %:productName%) " +
+    // 产品过滤为 ProductNameIndex 解析出的精确名称，allProducts 为 true 时不过滤（productNames 传任意非空列表）；
+    // 匹配的名称过多时不绑定过长的 IN 列表，改为 allProducts 加 keyword 包含匹配，keyword 为 null 时不生效
+    @Query(value = SUMMARY_SELECT +
+            "WHERE (:allProducts = TRUE OR s.productName IN :productNames) " +
+            "AND (:keyword IS NULL OR s.productName LIKE CONCAT('%', :keyword, '%')) " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion) " +
+            "AND (:startDate IS NULL OR s.salesDate >= :startDate) " +
+            "AND (:endDate IS NULL OR s.salesDate <= :endDate)",
+            countQuery = "SELECT COUNT(s) FROM Sales s " +
+            "WHERE (:allProducts = TRUE OR s.productName IN :productNames) " +
+            "AND (:keyword IS NULL OR s.productName LIKE CONCAT('%', :keyword, '%')) " +
             "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion) " +
             "AND (:startDate IS NULL OR s.salesDate >= :startDate) " +
             "AND (:endDate IS NULL OR s.salesDate <= :endDate)")
-    Page<Sales> findByCondition(
-            @Param("productName") String productName,
+    Page<SalesDTO> findByCondition(
+            @Param("allProducts") boolean allProducts,
+            @Param("productNames") Collection<String> productNames,
+            @Param("keyword") String keyword,
             @Param("salesRegion") String salesRegion,
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate,
             Pageable pageable);
 
+    // 游标翻页：按 (salesDate, id) 倒序取游标之后的记录，返回 List 不触发计数查询，走 idx_sales_date（二级索引末尾隐含主键 id）
+    @Query(SUMMARY_SELECT +
+            "WHERE (:allProducts = TRUE OR s.productName IN :productNames) " +
+            "AND (:keyword IS NULL OR s.productName LIKE CONCAT('%', :keyword, '%')) " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion) " +
+            "AND (:startDate IS NULL OR s.salesDate >= :startDate) " +
+            "AND (:endDate IS NULL OR s.salesDate <= :endDate) " +
+            "AND (:afterDate IS NULL OR s.salesDate < :afterDate " +
+            "     OR (s.salesDate = :afterDate AND s.id < :afterId)) " +
+            "ORDER BY s.salesDate DESC, s.id DESC")
+    List<SalesDTO> findPageAfter(
+            @Param("allProducts") boolean allProducts,
+            @Param("productNames") Collection<String> productNames,
+            @Param("keyword") String keyword,
+            @Param("salesRegion") String salesRegion,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("afterDate") LocalDateTime afterDate,
+            @Param("afterId") Long afterId,
+            Pageable limit);
 
+    @Query("SELECT COUNT(s) FROM Sales s " +
+            "WHERE (:allProducts = TRUE OR s.productName IN :productNames) " +
+            "AND (:keyword IS NULL OR s.productName LIKE CONCAT('%', :keyword, '%')) " +
+            "AND (:salesRegion IS NULL OR s.salesRegion = :salesRegion) " +
+            "AND (:startDate IS NULL OR s.salesDate >= :startDate) " +
+            "AND (:endDate IS NULL OR s.salesDate <= :endDate)")
+    long countByCondition(
+            @Param("allProducts") boolean allProducts,
+            @Param("productNames") Collection<String> productNames,
+            @Param("keyword") String keyword,
+            @Param("salesRegion") String salesRegion,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate);
 
-    interface ProductSalesStats {
-        String getProductName();
-        Long getCount();
-        Double getTotal();
-    }
-
-    // 获取销量前N的产品
-    @Query(value = "SELECT s.product_name as productName, COUNT(*) as count, SUM(s.total_amount) as total " +
-           "FROM sales s GROUP BY s.product_name ORDER BY count DESC",
-           countQuery = "SELECT COUNT(DISTINCT s.product_name) FROM sales s",
-           nativeQuery = true)
-    Page<ProductSalesStats> findTopSellingProducts(Pageable pageable);
-    
-    // 按地区统计销售额
+    // 按地区统计销售额（idx_sales_date_region_cover 覆盖）
     @Query("SELECT s.salesRegion, SUM(s.totalAmount) " +
            "FROM Sales s GROUP BY s.salesRegion ORDER BY SUM(s.totalAmount) DESC")
     List<Object[]> findSalesByRegion();
     
-    @Query(value = "SELECT s.sales_region as groupKey, SUM(s.sales_quantity * s.unit_price) as totalAmount " +
+    @Query(value = "SELECT s.sales_region as groupKey, SUM(s.total_amount) as totalAmount " +
            "FROM sales s GROUP BY s.sales_region ORDER BY totalAmount DESC LIMIT 5", nativeQuery = true)
     List<Object[]> getSalesByRegion();
     
-    @Query(value = "SELECT DATE_FORMAT(s.sales_date, '%Y-%m') as groupKey, " +
-           "SUM(s.sales_quantity * s.unit_price) as totalAmount " +
-           "FROM sales s GROUP BY DATE_FORMAT(s.sales_date, '%Y-%m') " +
-           "ORDER BY groupKey DESC LIMIT 12", nativeQuery = true)
-    List<Object[]> getSalesByMonth();
-    
-    @Query("SELECT CONCAT(YEAR(s.salesDate), '-', MONTH(s.salesDate)) as month, " +
-           "SUM(s.totalAmount) FROM Sales s " +
-           "GROUP BY YEAR(s.salesDate), MONTH(s.salesDate) " +
-           "ORDER BY YEAR(s.salesDate) DESC, MONTH(s.salesDate) DESC")
-    List<Object[]> findSalesByMonth();
-    
-    // 获取所有销售区域
-    @Query("SELECT DISTINCT s.salesRegion FROM Sales s ORDER BY s.salesRegion")
-    List<String> findDistinctRegions();
-
-    // 按指定区域统计销售数据
-    @Query("SELECT s.salesRegion, SUM(s.totalAmount), COUNT(s) " +
-           "FROM Sales s " +
-           "WHERE s.salesRegion = :region " +
-           "AND s.salesDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY s.salesRegion")
-    List<Object[]> findRegionStatisticsForRegion(
-        @Param("region") String region,
-        @Param("startDate") LocalDateTime startDate,
-        @Param("endDate") LocalDateTime endDate);
-
-    // 统计所有区域销售数据
-    @Query("SELECT s.salesRegion, SUM(s.totalAmount), COUNT(s) " +
-           "FROM Sales s " +
-           "WHERE s.salesDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY s.salesRegion " +
-           "ORDER BY SUM(s.totalAmount) DESC")
-    List<Object[]> findRegionStatisticsForAllRegions(
-        @Param("startDate") LocalDateTime startDate,
-        @Param("endDate") LocalDateTime endDate);
-
     Long countBySalesDateBetween(LocalDateTime startDate, LocalDateTime endDate);
 
-    @Query("SELECT SUM(s.salesQuantity) FROM Sales s WHERE s.salesDate BETWEEN ?1 AND ?2")
-    Long sumSalesQuantityBySalesDateBetween(LocalDateTime start, LocalDateTime end);
-
-    @Query("SELECT s.productName, SUM(s.salesQuantity), SUM(s.totalAmount) " +
-           "FROM Sales s " +
-           "WHERE s.salesDate BETWEEN :startDate AND :endDate " +
-           "GROUP BY s.productName " +
-           "ORDER BY SUM(s.totalAmount) DESC")
-    List<Object[]> findTopSellingProductsWithRevenue(
-        @Param("startDate") LocalDateTime startDate,
-        @Param("endDate") LocalDateTime endDate);
-
-    @Query(value = "SELECT DATE_FORMAT(s.sales_date, '%Y-%m-%d') as date, SUM(s.total_amount) " +
-           "FROM sales s " +
-           "WHERE s.sales_date BETWEEN :startDate AND :endDate " +
-           "GROUP BY DATE_FORMAT(s.sales_date, '%Y-%m-%d') " +
-           "ORDER BY date", nativeQuery = true)
-    List<Object[]> findSalesTrendByDay(
-        @Param("startDate") LocalDateTime startDate,
-        @Param("endDate") LocalDateTime endDate);
-
     // 导入相关的方法
     Long countByImportId(String importId);
 
@@ -141,18 +156,4 @@ public interface SalesRepository extends JpaRepository<Sales, Long>, JpaSpecific
            ":#{#sales.unitPrice}, :#{#sales.totalAmount}, :#{#sales.importId}, :#{#sales.importBatch}, :#{#sales.createdAt})",
            nativeQuery = true)
     void batchInsert(@Param("sales") Sales sales);
-
-    // 获取指定日期范围内的销售数据，用于数据可视化
-    @Query(value = "SELECT DATE_FORMAT(s.sales_date, '%Y-%m-%d') as date, " +
-           "s.product_name as product, " +
-           "SUM(s.sales_quantity) as sales, " +
-           "SUM(s.total_amount) as revenue, " +
-           "SUM(s.total_amount - (s.unit_price * s.sales_quantity * 0.7)) as profit " +
-           "FROM sales s " +
-           "WHERE s.sales_date BETWEEN :startDate AND :endDate " +
-           "GROUP BY DATE_FORMAT(s.sales_date, '%Y-%m-%d'), s.product_name " +
-           "ORDER BY date ASC, product ASC", nativeQuery = true)
-    List<Map<String, Object>> findSalesDataByDateRange(
-        @Param("startDate") LocalDateTime startDate,
-        @Param("endDate") LocalDateTime endDate);
 }
@@ -7,17 +7,21 @@ import org.springframework.data.jpa.domain.Specification;
 
 import javax.persistence.criteria.Predicate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class SalesSpecification {
     
-    public static Specification<Sales> buildSpecification(SalesQueryDTO queryDTO) {
+    /**
+     * @param productNames queryDTO.productName 经 ProductNameIndex 解析出的精确名称，不按产品过滤时为 null
+     */
+    public static Specification<Sales> buildSpecification(SalesQueryDTO queryDTO, Collection<String> productNames) {
         return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
             
-            if (StringUtils.isNotBlank(queryDTO.getProductName())) {
-                predicates.add(criteriaBuilder.like(root.get("productName"), 
-                    "%" + queryDTO.getProductName() + "%"));
+            if (productNames != null) {
+                predicates.add(productNames.isEmpty() ? criteriaBuilder.disjunction()
+                    : root.get("productName").in(productNames));
             }
             
             if (StringUtils.isNotBlank(queryDTO.getSalesRegion())) {
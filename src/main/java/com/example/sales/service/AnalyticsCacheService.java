@@ -0,0 +1,119 @@
+package com.example.sales.service;
+
+import com.example.sales.dto.RegionSalesDTO;
+import com.example.sales.dto.SalesOverviewDTO;
+import com.example.sales.dto.VisualizationData;
+import com.example.sales.event.ImportCompletedEvent;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.event.SalesRollupRebuiltEvent;
+import com.example.sales.service.cache.CachedValue;
+import com.example.sales.service.cache.RefreshingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 看板、可视化和区域统计的缓存入口。过期结果先返回再后台刷新，
+ * 默认参数的请求在启动、每次导入完成后和每天零点预热。
+ */
+@Slf4j
+@Service
+public class AnalyticsCacheService {
+
+    private static final List<String> TIME_RANGES = Arrays.asList("7d", "30d", "90d", "1y");
+
+    private final SalesService salesService;
+    private final DataVisualizationService visualizationService;
+    private final RefreshingCache cache;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final List<String> warmDimensions;
+
+    @Autowired
+    public AnalyticsCacheService(SalesService salesService,
+                                 DataVisualizationService visualizationService,
+                                 RefreshingCache cache,
+                                 @Qualifier("analyticsRefreshScheduler") ThreadPoolTaskScheduler scheduler,
+                                 @Value("${sales.refresh.warm-dimensions:sales}") List<String> warmDimensions) {
+        this.salesService = salesService;
+        this.visualizationService = visualizationService;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.warmDimensions = warmDimensions;
+    }
+
+    public CachedValue<SalesOverviewDTO> getSalesOverview(LocalDate startDate, LocalDate endDate, Integer maxPoints,
+                                                          PeriodComparisonService.Offset compare) {
+        return cache.get("salesOverview",
+                () -> salesService.getSalesOverview(startDate, endDate, maxPoints, compare),
+                startDate, endDate, maxPoints, compare);
+    }
+
+    // 可视化区间相对于 today 计算，日期参与缓存键，加载函数也固定用这一天：
+    // 跨天后后台刷新仍写回前一天的键（随后因无人读取而被移除），新一天的键由零点预热
+    public CachedValue<VisualizationData> getVisualizationData(String timeRange, String dimension, Integer maxPoints,
+                                                               PeriodComparisonService.Offset compare, LocalDate today) {
+        return cache.get("visualization",
+                () -> visualizationService.getVisualizationData(timeRange, dimension, maxPoints, compare, today),
+                timeRange, dimension, maxPoints, compare, today);
+    }
+
+    public CachedValue<List<RegionSalesDTO>> getSalesByRegion() {
+        return cache.get("salesByRegion", salesService::getSalesByRegion);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        cache.runInBackground(this::warmDefaults);
+        scheduler.schedule(this::warmDefaults, new CronTrigger("0 0 0 * * *"));
+    }
+
+    @EventListener
+    public void onImportCompleted(ImportCompletedEvent event) {
+        cache.runInBackground(this::warmDefaults);
+    }
+
+    // 提交后才使缓存过期，避免刷新线程读到未提交前的数据后又被当作最新结果；先于数据版本推进执行
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void afterSalesCommitted(SalesChangedEvent event) {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRollupRebuilt(SalesRollupRebuiltEvent event) {
+        cache.invalidateAll();
+    }
+
+    private void warmDefaults() {
+        long begin = System.currentTimeMillis();
+        // 与 SalesOverviewController 的默认参数一致
+        LocalDate startDate = LocalDate.ofEpochDay(0);
+        LocalDate endDate = LocalDate.now().minusDays(1);
+        cache.warm("salesOverview", () -> salesService.getSalesOverview(startDate, endDate, null, null),
+                startDate, endDate, null, null);
+        LocalDate today = LocalDate.now();
+        for (String timeRange : TIME_RANGES) {
+            for (String dimension : warmDimensions) {
+                cache.warm("visualization",
+                        () -> visualizationService.getVisualizationData(timeRange, dimension, null, null, today),
+                        timeRange, dimension, null, null, today);
+            }
+        }
+        cache.warm("salesByRegion", salesService::getSalesByRegion);
+        log.info("分析结果预热完成，耗时 {} ms", System.currentTimeMillis() - begin);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.sales.service;
+
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.event.SalesRollupRebuiltEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * 销售数据版本。每次写入提交后序号加一，并记录受影响日期最后一次变化时的序号。
+ * 水位线格式为 "epoch:序号"，epoch 在每次启动时重新生成，重启前的水位线一律视为失效。
+ */
+@Service
+public class DataVersionService {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<LocalDate, Long> dayVersions = new HashMap<>();
+    private long sequence;
+    // 汇总表对账修正时的序号：修正可能改变任意日期，所有区间的版本都不低于它，更早的水位线失效
+    private long rebuiltAt;
+
+    // 提交后再推进序号：读到新水位线的客户端一定能读到对应的数据。
+    // 排在其他提交后监听器之后，结果缓存先失效，按新版本生成的 ETag 不会对应到旧结果
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public synchronized void afterSalesCommitted(SalesChangedEvent event) {
+        sequence++;
+        for (SalesChange change : event.getChanges()) {
+            dayVersions.put(change.getSalesDate().toLocalDate(), sequence);
+        }
+    }
+
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public synchronized void onRollupRebuilt(SalesRollupRebuiltEvent event) {
+        sequence++;
+        rebuiltAt = sequence;
+    }
+
+    public synchronized String currentWatermark() {
+        return epoch + ":" + sequence;
+    }
+
+    /**
+     * [startDate, endDate] 内数据的版本：区间内最后一次变化时的序号，区间外的写入不改变它。
+     */
+    public synchronized String rangeVersion(LocalDate startDate, LocalDate endDate) {
+        long version = rebuiltAt;
+        for (Map.Entry<LocalDate, Long> entry : dayVersions.entrySet()) {
+            LocalDate day = entry.getKey();
+            if (entry.getValue() > version && !day.isBefore(startDate) && !day.isAfter(endDate)) {
+                version = entry.getValue();
+            }
+        }
+        return epoch + ":" + version;
+    }
+
+    /**
+     * 水位线之后 [startDate, endDate] 内发生过变化的日期。水位线缺失、格式错误或来自其他 epoch 时返回 null，
+     * 调用方应改为返回完整数据。
+     */
+    public synchronized Changes changesSince(String watermark, LocalDate startDate, LocalDate endDate) {
+        Long since = parse(watermark);
+        if (since == null) {
+            return null;
+        }
+        SortedSet<LocalDate> days = new TreeSet<>();
+        for (Map.Entry<LocalDate, Long> entry : dayVersions.entrySet()) {
+            LocalDate day = entry.getKey();
+            if (entry.getValue() > since && !day.isBefore(startDate) && !day.isAfter(endDate)) {
+                days.add(day);
+            }
+        }
+        return new Changes(epoch + ":" + sequence, days);
+    }
+
+    private Long parse(String watermark) {
+        if (watermark == null) {
+            return null;
+        }
+        int separator = watermark.indexOf(':');
+        if (separator < 0 || !watermark.substring(0, separator).equals(epoch)) {
+            return null;
+        }
+        try {
+            long value = Long.parseLong(watermark.substring(separator + 1));
+            return value >= rebuiltAt && value <= sequence ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static class Changes {
+        private final String watermark;
+        private final SortedSet<LocalDate> days;
+
+        private Changes(String watermark, SortedSet<LocalDate> days) {
+            this.watermark = watermark;
+            this.days = days;
+        }
+
+        public String getWatermark() {
+            return watermark;
+        }
+
+        public SortedSet<LocalDate> getDays() {
+            return days;
+        }
+    }
+}
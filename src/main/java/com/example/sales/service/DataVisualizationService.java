@@ -1,87 +1,310 @@
 package com.example.sales.service;
 
+import com.example.sales.dto.PeriodComparisonDTO;
 import com.example.sales.dto.VisualizationData;
-import com.example.sales.repository.SalesRepository;
+import com.example.sales.dto.VisualizationDetailPageDTO;
+import com.example.sales.service.parallel.RangeSplitExecutor;
+import com.example.sales.service.parallel.SingleFlight;
+import com.example.sales.service.rollup.RollupRow;
+import com.example.sales.service.rollup.SalesRollupService;
+import com.example.sales.service.series.TrendDownsampler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 public class DataVisualizationService {
 
-    private final SalesRepository salesRepository;
+    private static final int SUMMARY_SIZE = 5;
+
+    // 按天、产品聚合，结果直接从 ResultSet 读入基本类型累加器；
+    // 分组顺序与 idx_sales_day_product_cover 一致，只扫索引且无需临时表排序
+    private static final String DAILY_PRODUCT_SELECT =
+        "SELECT s.sales_day AS sales_day, " +
+        "s.product_name AS product, " +
+        "SUM(s.sales_quantity) AS sales, " +
+        "SUM(s.total_amount) AS revenue, " +
+        "SUM(s.total_amount - (s.unit_price * s.sales_quantity * 0.7)) AS profit " +
+        "FROM sales s ";
+    private static final String DAILY_PRODUCT_GROUP =
+        "GROUP BY s.sales_day, s.product_name " +
+        "ORDER BY s.sales_day ASC, s.product_name ASC";
+    private static final String DAILY_PRODUCT_SQL =
+        DAILY_PRODUCT_SELECT + "WHERE s.sales_day BETWEEN ? AND ? " + DAILY_PRODUCT_GROUP;
+    // 明细分页：按 (日期, 产品) 键集续读，沿索引顺序分组，取满一页即停止
+    private static final String DETAIL_PAGE_SQL =
+        DAILY_PRODUCT_SELECT +
+        "WHERE s.sales_day BETWEEN ? AND ? " +
+        "AND (s.sales_day > ? OR (s.sales_day = ? AND s.product_name > ?)) " +
+        DAILY_PRODUCT_GROUP + " LIMIT ?";
+    private static final String DAY_TOTALS_SELECT =
+        "SELECT s.sales_day AS sales_day, " +
+        "SUM(s.sales_quantity) AS sales, " +
+        "SUM(s.total_amount) AS revenue, " +
+        "SUM(s.total_amount - (s.unit_price * s.sales_quantity * 0.7)) AS profit " +
+        "FROM sales s ";
+
+    public static final int DEFAULT_DETAIL_PAGE_SIZE = 500;
+    public static final int MAX_DETAIL_PAGE_SIZE = 5000;
+
+    // 增量请求涉及的天数超过该值时改为返回完整数据
+    private static final int MAX_DELTA_DAYS = 62;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PeriodComparisonService periodComparisonService;
+    private final RangeSplitExecutor rangeSplitExecutor;
+    private final SingleFlight singleFlight;
+    private final DataVersionService dataVersionService;
+    private final SalesRollupService salesRollupService;
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     @Autowired
-    public DataVisualizationService(SalesRepository salesRepository) {
-        this.salesRepository = salesRepository;
+    public DataVisualizationService(JdbcTemplate jdbcTemplate, PeriodComparisonService periodComparisonService,
+                                    RangeSplitExecutor rangeSplitExecutor, SingleFlight singleFlight,
+                                    DataVersionService dataVersionService, SalesRollupService salesRollupService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.periodComparisonService = periodComparisonService;
+        this.rangeSplitExecutor = rangeSplitExecutor;
+        this.singleFlight = singleFlight;
+        this.dataVersionService = dataVersionService;
+        this.salesRollupService = salesRollupService;
     }
 
-    @Transactional(readOnly = true)
-    public VisualizationData getVisualizationData(String timeRange, String dimension) {
-        LocalDate endDate = LocalDate.now();
+    // 不开启事务：各分片在工作线程上各自取连接，调用线程不额外占用一个连接等待分片完成
+    public VisualizationData getVisualizationData(String timeRange, String dimension, Integer maxPoints,
+                                                  PeriodComparisonService.Offset compare) {
+        return getVisualizationData(timeRange, dimension, maxPoints, compare, LocalDate.now());
+    }
+
+    /**
+     * 以 endDate 为“今天”计算 timeRange 对应的区间，缓存的加载函数用它固定在缓存键的日期上。
+     */
+    public VisualizationData getVisualizationData(String timeRange, String dimension, Integer maxPoints,
+                                                  PeriodComparisonService.Offset compare, LocalDate endDate) {
         LocalDate startDate = calculateStartDate(endDate, timeRange);
+        int summaryColumn = summaryColumn(dimension);
+        return singleFlight.execute("visualization",
+                () -> computeVisualizationData(startDate, endDate, summaryColumn, maxPoints, compare),
+                startDate, endDate, summaryColumn, maxPoints, compare);
+    }
 
-        // Convert LocalDate to LocalDateTime for repository query
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
+    private VisualizationData computeVisualizationData(LocalDate startDate, LocalDate endDate, int summaryColumn,
+                                                       Integer maxPoints, PeriodComparisonService.Offset compare) {
+        // 先取水位线再查询，查询期间提交的变更在下次增量请求中会再次返回
+        String watermark = dataVersionService.currentWatermark();
+        int days = (int) ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        double[] salesByDay = new double[days];
+        double[] revenueByDay = new double[days];
+        double[] profitByDay = new double[days];
+        boolean[] hasData = new boolean[days];
 
-        List<Map<String, Object>> rawData = salesRepository.findSalesDataByDateRange(
-            startDateTime, endDateTime);
+        // 各分片的天互不重叠，按天的数组由分片直接写入各自的下标；产品合计在合并时汇总
+        SlicePartial merged = rangeSplitExecutor.execute(startDate, endDate, (from, to) -> {
+            SlicePartial partial = new SlicePartial();
+            jdbcTemplate.query(DAILY_PRODUCT_SQL, (RowCallbackHandler) rs -> {
+                LocalDate day = rs.getDate("sales_day").toLocalDate();
+                String product = rs.getString("product");
+                double sales = rs.getDouble("sales");
+                double revenue = rs.getDouble("revenue");
+                double profit = rs.getDouble("profit");
 
-        if (rawData == null || rawData.isEmpty()) {
-            return createEmptyVisualizationData();
+                int index = (int) ChronoUnit.DAYS.between(startDate, day);
+                salesByDay[index] += sales;
+                revenueByDay[index] += revenue;
+                profitByDay[index] += profit;
+                hasData[index] = true;
+
+                double[] total = partial.productTotals.computeIfAbsent(product, key -> new double[1]);
+                if (summaryColumn == 0) {
+                    total[0] += sales;
+                } else if (summaryColumn == 1) {
+                    total[0] += revenue;
+                } else if (summaryColumn == 2) {
+                    total[0] += profit;
+                }
+            }, Date.valueOf(from), Date.valueOf(to));
+            return partial;
+        }, SlicePartial::merge);
+        Map<String, double[]> productTotals = merged.productTotals;
+
+        PeriodComparisonDTO comparison = compare != null
+                ? periodComparisonService.compare(startDate, endDate, compare) : null;
+        if (productTotals.isEmpty()) {
+            VisualizationData empty = createEmptyVisualizationData();
+            empty.setComparison(comparison);
+            empty.setWatermark(watermark);
+            empty.setDelta(false);
+            empty.setStartDate(dateFormatter.format(startDate));
+            return empty;
         }
 
         VisualizationData data = new VisualizationData();
-        
-        // Process time series data
-        Map<String, List<Map<String, Object>>> groupedByDate = rawData.stream()
-            .collect(Collectors.groupingBy(
-                record -> (String) record.get("date"),
-                LinkedHashMap::new,
-                Collectors.toList()
-            ));
-
-        List<String> dates = new ArrayList<>(groupedByDate.keySet());
-        Collections.sort(dates);
+        data.setComparison(comparison);
+        data.setWatermark(watermark);
+        data.setDelta(false);
+        data.setStartDate(dateFormatter.format(startDate));
 
+        // Process time series data
+        List<String> dates = new ArrayList<>();
         List<Double> sales = new ArrayList<>();
         List<Double> revenue = new ArrayList<>();
         List<Double> profit = new ArrayList<>();
+        List<Integer> dayOffsets = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            if (hasData[i]) {
+                dates.add(dateFormatter.format(startDate.plusDays(i)));
+                sales.add(salesByDay[i]);
+                revenue.add(revenueByDay[i]);
+                profit.add(profitByDay[i]);
+                dayOffsets.add(i);
+            }
+        }
 
-        dates.forEach(date -> {
-            List<Map<String, Object>> records = groupedByDate.get(date);
-            sales.add(calculateTotal(records, "sales"));
-            revenue.add(calculateTotal(records, "revenue"));
-            profit.add(calculateTotal(records, "profit"));
-        });
+        // 长区间按维度序列做 LTTB 降采样，四个序列使用同一组下标保持对齐
+        List<Double> trendSeries = summaryColumn == 0 ? sales : (summaryColumn == 2 ? profit : revenue);
+        int[] indices = selectTrendIndices(dayOffsets, trendSeries, maxPoints);
+        data.setDates(TrendDownsampler.pick(dates, indices));
+        data.setSales(TrendDownsampler.pick(sales, indices));
+        data.setRevenue(TrendDownsampler.pick(revenue, indices));
+        data.setProfit(TrendDownsampler.pick(profit, indices));
+        data.setSummary(generateSummary(productTotals));
 
-        data.setDates(dates);
-        data.setSales(sales);
-        data.setRevenue(revenue);
-        data.setProfit(profit);
+        return data;
+    }
+
+    /**
+     * 只返回水位线 since 之后窗口内变化过的日期。since 无效或变化的天数过多时返回 null，由调用方改取完整数据。
+     */
+    public VisualizationData getVisualizationDelta(String timeRange, String dimension, String since) {
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = calculateStartDate(endDate, timeRange);
+        DataVersionService.Changes changes = dataVersionService.changesSince(since, startDate, endDate);
+        if (changes == null || changes.getDays().size() > MAX_DELTA_DAYS) {
+            return null;
+        }
 
-        // Process summary data
-        List<VisualizationData.SummaryItem> summary = generateSummary(rawData, dimension);
-        data.setSummary(summary);
+        VisualizationData data = createEmptyVisualizationData();
+        data.setWatermark(changes.getWatermark());
+        data.setDelta(true);
+        data.setStartDate(dateFormatter.format(startDate));
+        if (changes.getDays().isEmpty()) {
+            data.setSummary(null);
+            return data;
+        }
 
-        // Process details
-        List<VisualizationData.DetailItem> details = rawData.stream()
-            .map(this::convertToDetailItem)
-            .collect(Collectors.toList());
-        data.setDetails(details);
+        Map<LocalDate, double[]> dayTotals = new TreeMap<>();
+        List<Object> args = new ArrayList<>();
+        StringJoiner placeholders = new StringJoiner(", ", "WHERE s.sales_day IN (", ") ");
+        for (LocalDate day : changes.getDays()) {
+            dayTotals.put(day, new double[3]);
+            args.add(Date.valueOf(day));
+            placeholders.add("?");
+        }
+        jdbcTemplate.query(DAY_TOTALS_SELECT + placeholders + "GROUP BY s.sales_day", (RowCallbackHandler) rs -> {
+            double[] totals = dayTotals.get(rs.getDate("sales_day").toLocalDate());
+            totals[0] = rs.getDouble("sales");
+            totals[1] = rs.getDouble("revenue");
+            totals[2] = rs.getDouble("profit");
+        }, args.toArray());
 
+        for (Map.Entry<LocalDate, double[]> entry : dayTotals.entrySet()) {
+            data.getDates().add(dateFormatter.format(entry.getKey()));
+            data.getSales().add(entry.getValue()[0]);
+            data.getRevenue().add(entry.getValue()[1]);
+            data.getProfit().add(entry.getValue()[2]);
+        }
+        data.setSummary(summaryFromRollup(startDate, endDate, summaryColumn(dimension)));
         return data;
     }
 
+    // 窗口内的产品合计直接读汇总表，增量请求不必扫描整个窗口的 sales 记录
+    private List<VisualizationData.SummaryItem> summaryFromRollup(LocalDate startDate, LocalDate endDate, int summaryColumn) {
+        Map<String, double[]> productTotals = new HashMap<>();
+        for (RollupRow row : salesRollupService.query(startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay(),
+                null, true, false)) {
+            double value = summaryColumn == 0 ? row.getQuantity()
+                    : summaryColumn == 1 ? row.getAmount().doubleValue()
+                    : summaryColumn == 2 ? row.getProfit().doubleValue() : 0;
+            productTotals.computeIfAbsent(row.getProductName(), key -> new double[1])[0] += value;
+        }
+        return generateSummary(productTotals);
+    }
+
+    /**
+     * 窗口内 (日期, 产品) 明细的一页，按日期、产品升序。afterDate 和 afterProduct 为上一页最后一行，为空时从头开始。
+     */
+    public VisualizationDetailPageDTO getDetails(String timeRange, String afterDate, String afterProduct, int limit) {
+        if (limit <= 0 || limit > MAX_DETAIL_PAGE_SIZE) {
+            throw new IllegalArgumentException("每页行数须在 1 到 " + MAX_DETAIL_PAGE_SIZE + " 之间");
+        }
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = calculateStartDate(endDate, timeRange);
+        LocalDate cursorDate;
+        try {
+            cursorDate = afterDate != null ? LocalDate.parse(afterDate) : startDate.minusDays(1);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("afterDate 格式应为 yyyy-MM-dd: " + afterDate);
+        }
+        String cursorProduct = afterDate != null && afterProduct != null ? afterProduct : "";
+
+        // 多取一行判断是否还有下一页
+        List<VisualizationData.DetailItem> items = new ArrayList<>(limit + 1);
+        jdbcTemplate.query(DETAIL_PAGE_SQL, (RowCallbackHandler) rs -> items.add(mapDetail(rs)),
+                Date.valueOf(startDate), Date.valueOf(endDate),
+                Date.valueOf(cursorDate), Date.valueOf(cursorDate), cursorProduct, limit + 1);
+
+        VisualizationDetailPageDTO page = new VisualizationDetailPageDTO();
+        page.setHasMore(items.size() > limit);
+        if (items.size() > limit) {
+            items.remove(limit);
+        }
+        page.setItems(items);
+        if (page.getHasMore()) {
+            VisualizationData.DetailItem last = items.get(items.size() - 1);
+            page.setNextAfterDate(last.getDate());
+            page.setNextAfterProduct(last.getProduct());
+        }
+        return page;
+    }
+
+    /**
+     * 逐行回调窗口内的全部明细，流式结果集逐行读取，内存占用与行数无关。回调中不能在同一连接上执行其他语句。
+     */
+    public void streamDetails(String timeRange, Consumer<VisualizationData.DetailItem> consumer) {
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = calculateStartDate(endDate, timeRange);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(DAILY_PRODUCT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setDate(1, Date.valueOf(startDate));
+            ps.setDate(2, Date.valueOf(endDate));
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapDetail(rs)));
+    }
+
+    private VisualizationData.DetailItem mapDetail(ResultSet rs) throws SQLException {
+        VisualizationData.DetailItem item = new VisualizationData.DetailItem();
+        item.setDate(dateFormatter.format(rs.getDate("sales_day").toLocalDate()));
+        item.setProduct(rs.getString("product"));
+        item.setSales(rs.getDouble("sales"));
+        item.setRevenue(rs.getDouble("revenue"));
+        item.setProfit(rs.getDouble("profit"));
+        return item;
+    }
+
     private VisualizationData createEmptyVisualizationData() {
         VisualizationData data = new VisualizationData();
         data.setDates(new ArrayList<>());
@@ -89,10 +312,17 @@ public class DataVisualizationService {
         data.setRevenue(new ArrayList<>());
         data.setProfit(new ArrayList<>());
         data.setSummary(new ArrayList<>());
-        data.setDetails(new ArrayList<>());
         return data;
     }
 
+    /**
+     * timeRange 对应的 [开始日期, 今天]。
+     */
+    public LocalDate[] dateRange(String timeRange) {
+        LocalDate endDate = LocalDate.now();
+        return new LocalDate[] {calculateStartDate(endDate, timeRange), endDate};
+    }
+
     private LocalDate calculateStartDate(LocalDate endDate, String timeRange) {
         switch (timeRange) {
             case "7d":
@@ -108,58 +338,64 @@ public class DataVisualizationService {
         }
     }
 
-    private Double calculateTotal(List<Map<String, Object>> records, String field) {
-        return records.stream()
-            .mapToDouble(record -> {
-                Object value = record.get(field);
-                if (value instanceof Number) {
-                    return ((Number) value).doubleValue();
-                }
-                return 0.0;
-            })
-            .sum();
-    }
-
-    private List<VisualizationData.SummaryItem> generateSummary(
-            List<Map<String, Object>> rawData, String dimension) {
-        Map<String, Double> productTotals = rawData.stream()
-            .collect(Collectors.groupingBy(
-                record -> (String) record.get("product"),
-                Collectors.summingDouble(record -> {
-                    Object value = record.get(dimension);
-                    if (value instanceof Number) {
-                        return ((Number) value).doubleValue();
-                    }
-                    return 0.0;
-                })
-            ));
-
-        return productTotals.entrySet().stream()
-            .map(entry -> {
-                VisualizationData.SummaryItem item = new VisualizationData.SummaryItem();
-                item.setName(entry.getKey());
-                item.setValue(entry.getValue());
-                return item;
-            })
-            .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-            .limit(5)
-            .collect(Collectors.toList());
-    }
-
-    private VisualizationData.DetailItem convertToDetailItem(Map<String, Object> record) {
-        VisualizationData.DetailItem item = new VisualizationData.DetailItem();
-        item.setDate((String) record.get("date"));
-        item.setProduct((String) record.get("product"));
-        item.setSales(getDoubleValue(record.get("sales")));
-        item.setRevenue(getDoubleValue(record.get("revenue")));
-        item.setProfit(getDoubleValue(record.get("profit")));
-        return item;
+    private int[] selectTrendIndices(List<Integer> dayOffsets, List<Double> values, Integer maxPoints) {
+        double[] x = new double[values.size()];
+        double[] y = new double[values.size()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = dayOffsets.get(i);
+            y[i] = values.get(i);
+        }
+        return TrendDownsampler.selectIndices(x, y, maxPoints);
     }
 
-    private Double getDoubleValue(Object value) {
-        if (value instanceof Number) {
-            return ((Number) value).doubleValue();
+    private int summaryColumn(String dimension) {
+        switch (dimension) {
+            case "sales":
+                return 0;
+            case "revenue":
+                return 1;
+            case "profit":
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    // 小顶堆只保留前 N 个产品，避免对全部产品排序
+    private List<VisualizationData.SummaryItem> generateSummary(Map<String, double[]> productTotals) {
+        PriorityQueue<Map.Entry<String, double[]>> top = new PriorityQueue<>(
+            SUMMARY_SIZE + 1, Comparator.comparingDouble(entry -> entry.getValue()[0]));
+        for (Map.Entry<String, double[]> entry : productTotals.entrySet()) {
+            if (top.size() < SUMMARY_SIZE) {
+                top.offer(entry);
+            } else if (entry.getValue()[0] > top.peek().getValue()[0]) {
+                top.poll();
+                top.offer(entry);
+            }
+        }
+
+        LinkedList<VisualizationData.SummaryItem> summary = new LinkedList<>();
+        while (!top.isEmpty()) {
+            Map.Entry<String, double[]> entry = top.poll();
+            VisualizationData.SummaryItem item = new VisualizationData.SummaryItem();
+            item.setName(entry.getKey());
+            item.setValue(entry.getValue()[0]);
+            summary.addFirst(item);
+        }
+        return new ArrayList<>(summary);
+    }
+
+    private static final class SlicePartial {
+        private final Map<String, double[]> productTotals = new HashMap<>();
+
+        private static SlicePartial merge(SlicePartial a, SlicePartial b) {
+            for (Map.Entry<String, double[]> entry : b.productTotals.entrySet()) {
+                a.productTotals.merge(entry.getKey(), entry.getValue(), (x, y) -> {
+                    x[0] += y[0];
+                    return x;
+                });
+            }
+            return a;
         }
-        return 0.0;
     }
 }
@@ -6,8 +6,10 @@ import com.alibaba.excel.event.AnalysisEventListener;
 import com.example.sales.aspect.LoggingAspect;
 import com.example.sales.dto.ImportResult;
 import com.example.sales.entity.Sales;
+import com.example.sales.event.ImportCompletedEvent;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -33,6 +35,8 @@ public class FileImportService {
     private final Map<String, ImportResult> importResults = new ConcurrentHashMap<>();
     @Autowired
     private LoggingAspect loggingAspect;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     public boolean isValidFileType(String fileName) {
         if (fileName == null) {
@@ -104,6 +108,7 @@ public class FileImportService {
             result.addError("文件读取失败: " + e.getMessage());
             result.setStatus("failed");
         }
+        eventPublisher.publishEvent(new ImportCompletedEvent(importId));
     }
     
     private Sales convertToSales(Map<String, String> data) {
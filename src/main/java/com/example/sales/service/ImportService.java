@@ -6,14 +6,17 @@ import com.alibaba.excel.support.ExcelTypeEnum;
 import com.alibaba.excel.write.metadata.WriteSheet;
 import com.example.sales.dto.SalesImportDTO;
 import com.example.sales.entity.ImportStatus;
+import com.example.sales.event.ImportCompletedEvent;
 import com.example.sales.entity.Sales;
 import com.example.sales.repository.ImportStatusRepository;
+import com.example.sales.service.columnar.ArrowSalesReader;
 import com.example.sales.service.excel.SalesDataListener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -26,8 +29,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,6 +45,8 @@ public class ImportService {
     private final JdbcTemplate jdbcTemplate;
     private final ImportStatusRepository importStatusRepository;
     private final SalesService salesService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ArrowSalesReader arrowSalesReader;
     
     private static final int BATCH_SIZE = 1000;
     private static final String INSERT_SQL = 
@@ -165,8 +173,12 @@ public class ImportService {
                 handleExcelFile(file, importId, importBatch, result);
             } else if (originalFilename.endsWith(".csv")) {
                 handleCsvFile(file, importId, importBatch, result);
+            } else if (originalFilename.endsWith(".arrow") || originalFilename.endsWith(".feather")) {
+                handleColumnarFile(file, importId, importBatch, result, false);
+            } else if (originalFilename.endsWith(".parquet")) {
+                handleColumnarFile(file, importId, importBatch, result, true);
             } else {
-                throw new IllegalArgumentException("不支持的文件类型，仅支持.xlsx、.xls和.csv文件");
+                throw new IllegalArgumentException("不支持的文件类型，仅支持.xlsx、.xls、.csv、.arrow和.parquet文件");
             }
             
             result.put("status", "success");
@@ -177,7 +189,9 @@ public class ImportService {
             result.put("status", "error");
             result.put("message", e.getMessage());
         }
-        
+
+        // 失败时也可能已有批次提交，统一通知
+        eventPublisher.publishEvent(new ImportCompletedEvent(importId));
         return CompletableFuture.completedFuture(result);
     }
 
@@ -247,6 +261,70 @@ public class ImportService {
         }
     }
 
+    private void handleColumnarFile(MultipartFile file, String importId, String importBatch, Map<String, Object> result,
+                                    boolean parquet) throws Exception {
+        AtomicInteger totalRows = new AtomicInteger();
+        AtomicInteger successRows = new AtomicInteger();
+        List<String> errorMessages = Collections.synchronizedList(new ArrayList<>());
+        // Arrow 与 Parquet 都需要随机访问文件末尾的索引，先落到本地临时文件
+        Path temp = Files.createTempFile("sales-import-", parquet ? ".parquet" : ".arrow");
+        try {
+            file.transferTo(temp.toFile());
+            // 各记录批次在读取线程中校验并写入，与其他格式一样按 BATCH_SIZE 分段提交
+            ArrowSalesReader.BatchHandler handler = (batchIndex, rows) -> {
+                List<Sales> salesList = new ArrayList<>(rows.size());
+                for (SalesImportDTO dto : rows) {
+                    totalRows.incrementAndGet();
+                    try {
+                        validateData(dto, dto.getRowIndex());
+                        salesList.add(convertToEntity(dto));
+                    } catch (IllegalArgumentException e) {
+                        errorMessages.add(String.format("第%d个记录批次%s", batchIndex + 1, e.getMessage()));
+                    }
+                }
+                // 每段单独提交，某段失败（锁超时、死锁等）只记录错误，与 processBatch 一样继续处理其余数据
+                for (int from = 0; from < salesList.size(); from += BATCH_SIZE) {
+                    List<Sales> chunk = new ArrayList<>(salesList.subList(from, Math.min(from + BATCH_SIZE, salesList.size())));
+                    try {
+                        salesService.saveBatchSales(chunk, importId, importBatch);
+                        successRows.addAndGet(chunk.size());
+                    } catch (RuntimeException e) {
+                        log.error("保存第{}个记录批次失败", batchIndex + 1, e);
+                        errorMessages.add(String.format("第%d个记录批次中 %d 行保存失败: %s",
+                                batchIndex + 1, chunk.size(), e.getMessage()));
+                    }
+                }
+            };
+            if (parquet) {
+                arrowSalesReader.readParquet(temp, handler);
+            } else {
+                arrowSalesReader.read(temp, handler);
+            }
+        } catch (Exception e) {
+            errorMessages.add("文件读取失败: " + e.getMessage());
+            throw e;
+        } finally {
+            Files.deleteIfExists(temp);
+            // 读取中途失败时已有批次提交，状态也要落定，不能停在 processing
+            updateImportStatus(importId, totalRows.get(), successRows.get(), errorMessages);
+        }
+
+        result.put("totalRows", totalRows.get());
+        result.put("successRows", successRows.get());
+        result.put("errorMessages", errorMessages);
+    }
+
+    private Sales convertToEntity(SalesImportDTO dto) {
+        Sales sales = new Sales();
+        sales.setProductName(dto.getProductName());
+        sales.setSalesRegion(dto.getSalesRegion());
+        sales.setSalesDate(LocalDateTime.ofInstant(dto.getSalesDate().toInstant(), ZoneId.systemDefault()));
+        sales.setSalesQuantity(dto.getSalesQuantity());
+        sales.setUnitPrice(dto.getUnitPrice());
+        sales.setTotalAmount(dto.getUnitPrice().multiply(BigDecimal.valueOf(dto.getSalesQuantity())));
+        return sales;
+    }
+
     private SalesImportDTO parseCSVRecord(CSVRecord record) throws Exception {
         SalesImportDTO dto = new SalesImportDTO();
         dto.setProductName(record.get("产品名称"));
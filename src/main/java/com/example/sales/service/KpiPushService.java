@@ -0,0 +1,135 @@
+package com.example.sales.service;
+
+import com.example.sales.controller.KpiWebSocketHandler;
+import com.example.sales.dto.KpiDeltaDTO;
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.service.rollup.RollupLevel;
+import com.example.sales.service.rollup.RollupRow;
+import com.example.sales.service.rollup.SalesRollupService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把已提交的销售变更合并成指标增量推送给看板。事务提交后只在内存中累加差值，
+ * 按固定间隔合并发送一次；受影响日期的趋势点在发送时从日汇总行读取一次。
+ */
+@Slf4j
+@Service
+public class KpiPushService {
+
+    private final KpiWebSocketHandler handler;
+    private final SalesRollupService salesRollupService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final long flushMillis;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private Pending pending = new Pending();
+
+    @Autowired
+    public KpiPushService(KpiWebSocketHandler handler,
+                          SalesRollupService salesRollupService,
+                          ObjectMapper objectMapper,
+                          @Qualifier("kpiPushScheduler") ThreadPoolTaskScheduler scheduler,
+                          @Value("${sales.live.flush-ms:500}") long flushMillis) {
+        this.handler = handler;
+        this.salesRollupService = salesRollupService;
+        this.objectMapper = objectMapper;
+        this.scheduler = scheduler;
+        this.flushMillis = flushMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flush, Duration.ofMillis(flushMillis));
+    }
+
+    // 回滚的写入不推送
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void afterSalesCommitted(SalesChangedEvent event) {
+        for (SalesChange change : event.getChanges()) {
+            pending.add(change);
+        }
+    }
+
+    private void flush() {
+        Pending batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new Pending();
+        }
+        // 无人订阅时丢弃增量，客户端连接后先拉取一次完整概览
+        if (!handler.hasSubscribers()) {
+            return;
+        }
+
+        try {
+            KpiDeltaDTO delta = new KpiDeltaDTO();
+            delta.setSequence(sequence.incrementAndGet());
+            delta.setGeneratedAt(LocalDateTime.now().toString());
+            delta.setTotalSalesDelta(batch.amount);
+            delta.setTotalOrdersDelta(batch.quantity);
+            delta.setSalesByRegionDelta(batch.regions);
+            delta.setSalesTrend(trendPoints(batch.days));
+            handler.broadcast(objectMapper.writeValueAsString(delta));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("指标增量推送失败: {}", e.getMessage());
+        }
+    }
+
+    // 受影响日期的最新日销售额，一次读取首尾日期之间的日汇总行后按日期过滤
+    private Map<String, BigDecimal> trendPoints(SortedSet<LocalDate> days) {
+        Map<String, BigDecimal> trend = new LinkedHashMap<>();
+        for (LocalDate day : days) {
+            trend.put(day.toString(), BigDecimal.ZERO);
+        }
+        List<RollupRow> rows = salesRollupService.query(days.first().atStartOfDay(),
+                days.last().plusDays(1).atStartOfDay(), RollupLevel.DAY, false, false);
+        for (RollupRow row : rows) {
+            String day = row.getBucketStart().toLocalDate().toString();
+            if (trend.containsKey(day)) {
+                trend.put(day, row.getAmount());
+            }
+        }
+        return trend;
+    }
+
+    private static final class Pending {
+        private BigDecimal amount = BigDecimal.ZERO;
+        private long quantity;
+        private final Map<String, BigDecimal> regions = new TreeMap<>();
+        private final SortedSet<LocalDate> days = new TreeSet<>();
+
+        private void add(SalesChange change) {
+            amount = amount.add(change.getTotalAmount());
+            quantity += change.getQuantity();
+            if (change.getSalesRegion() != null) {
+                regions.merge(change.getSalesRegion(), change.getTotalAmount(), BigDecimal::add);
+            }
+            days.add(change.getSalesDate().toLocalDate());
+        }
+
+        private boolean isEmpty() {
+            return days.isEmpty();
+        }
+    }
+}
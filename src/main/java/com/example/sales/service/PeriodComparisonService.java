@@ -0,0 +1,136 @@
+package com.example.sales.service;
+
+import com.example.sales.dto.PeriodComparisonDTO;
+import com.example.sales.service.rollup.RollupRow;
+import com.example.sales.service.rollup.SalesRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 区间对比（环比、同比）。当前区间和对比区间在同一次汇总表扫描中读取，
+ * 再在内存中按区域、产品和合计分别计算差值与增长率。
+ */
+@Service
+public class PeriodComparisonService {
+
+    public enum Offset {
+        // 紧邻的上一个等长区间
+        PREVIOUS_PERIOD,
+        // 整体前移一个月
+        MONTH_OVER_MONTH,
+        // 整体前移一年
+        YEAR_OVER_YEAR;
+
+        public LocalDate[] shift(LocalDate start, LocalDate end) {
+            switch (this) {
+                case MONTH_OVER_MONTH:
+                    return new LocalDate[] {start.minusMonths(1), end.minusMonths(1)};
+                case YEAR_OVER_YEAR:
+                    return new LocalDate[] {start.minusYears(1), end.minusYears(1)};
+                default:
+                    long days = ChronoUnit.DAYS.between(start, end) + 1;
+                    return new LocalDate[] {start.minusDays(days), start.minusDays(1)};
+            }
+        }
+    }
+
+    private final SalesRollupService salesRollupService;
+
+    @Autowired
+    public PeriodComparisonService(SalesRollupService salesRollupService) {
+        this.salesRollupService = salesRollupService;
+    }
+
+    /**
+     * 对比 [startDate, endDate] 与按 offset 平移后的区间（均含首尾两天）。
+     */
+    public PeriodComparisonDTO compare(LocalDate startDate, LocalDate endDate, Offset offset) {
+        LocalDate[] previous = offset.shift(startDate, endDate);
+        List<LocalDateTime[]> ranges = new ArrayList<>();
+        ranges.add(new LocalDateTime[] {startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay()});
+        ranges.add(new LocalDateTime[] {previous[0].atStartOfDay(), previous[1].plusDays(1).atStartOfDay()});
+        List<List<RollupRow>> periods = salesRollupService.queryPeriods(ranges, true, true);
+
+        Totals[] totals = {new Totals(), new Totals()};
+        List<Map<String, Totals>> byRegion = new ArrayList<>();
+        List<Map<String, Totals>> byProduct = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Map<String, Totals> regions = new HashMap<>();
+            Map<String, Totals> products = new HashMap<>();
+            for (RollupRow row : periods.get(i)) {
+                totals[i].add(row);
+                regions.computeIfAbsent(row.getSalesRegion(), key -> new Totals()).add(row);
+                products.computeIfAbsent(row.getProductName(), key -> new Totals()).add(row);
+            }
+            byRegion.add(regions);
+            byProduct.add(products);
+        }
+
+        PeriodComparisonDTO comparison = new PeriodComparisonDTO();
+        comparison.setOffset(offset.name());
+        comparison.setCurrentStart(startDate);
+        comparison.setCurrentEnd(endDate);
+        comparison.setPreviousStart(previous[0]);
+        comparison.setPreviousEnd(previous[1]);
+        comparison.setTotal(item(null, totals[0], totals[1]));
+        comparison.setByRegion(items(byRegion.get(0), byRegion.get(1)));
+        comparison.setByProduct(items(byProduct.get(0), byProduct.get(1)));
+        return comparison;
+    }
+
+    // 两个区间出现过的名称取并集，按当前区间销售额降序
+    private List<PeriodComparisonDTO.Item> items(Map<String, Totals> current, Map<String, Totals> previous) {
+        Set<String> names = new HashSet<>(current.keySet());
+        names.addAll(previous.keySet());
+        List<PeriodComparisonDTO.Item> items = new ArrayList<>(names.size());
+        for (String name : names) {
+            items.add(item(name, current.getOrDefault(name, Totals.EMPTY), previous.getOrDefault(name, Totals.EMPTY)));
+        }
+        items.sort(Comparator.comparing(PeriodComparisonDTO.Item::getCurrentAmount).reversed()
+                .thenComparing(PeriodComparisonDTO.Item::getName));
+        return items;
+    }
+
+    private PeriodComparisonDTO.Item item(String name, Totals current, Totals previous) {
+        PeriodComparisonDTO.Item item = new PeriodComparisonDTO.Item();
+        item.setName(name);
+        item.setCurrentAmount(current.amount);
+        item.setPreviousAmount(previous.amount);
+        item.setAmountDelta(current.amount.subtract(previous.amount));
+        item.setAmountGrowthRate(growthRate(current.amount, previous.amount));
+        item.setCurrentQuantity(current.quantity);
+        item.setPreviousQuantity(previous.quantity);
+        item.setQuantityDelta(current.quantity - previous.quantity);
+        item.setQuantityGrowthRate(growthRate(BigDecimal.valueOf(current.quantity), BigDecimal.valueOf(previous.quantity)));
+        return item;
+    }
+
+    private static Double growthRate(BigDecimal current, BigDecimal previous) {
+        if (previous.signum() == 0) {
+            return null;
+        }
+        return current.subtract(previous)
+                .multiply(BigDecimal.valueOf(100))
+                .divide(previous.abs(), 2, RoundingMode.HALF_UP)
+                .doubleValue();
+    }
+
+    private static final class Totals {
+        private static final Totals EMPTY = new Totals();
+
+        private long quantity;
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        private void add(RollupRow row) {
+            quantity += row.getQuantity();
+            amount = amount.add(row.getAmount());
+        }
+    }
+}
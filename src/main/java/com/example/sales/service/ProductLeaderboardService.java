@@ -0,0 +1,191 @@
+package com.example.sales.service;
+
+import com.example.sales.dto.ProductRankDTO;
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.event.SalesRollupRebuiltEvent;
+import com.example.sales.service.rollup.RollupLevel;
+import com.example.sales.service.rollup.RollupRow;
+import com.example.sales.service.rollup.SalesRollupService;
+import com.example.sales.service.sketch.DailySketchCache;
+import com.example.sales.service.sketch.SpaceSavingSketch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 产品热销排行。每天每个区域维护按销量和按销售额的 Space-Saving 摘要，
+ * 任意区间的排行由逐日摘要合并得到；精确模式再用汇总表校验候选集。
+ */
+@Service
+public class ProductLeaderboardService {
+
+    public enum Metric {
+        QUANTITY, REVENUE
+    }
+
+    public static final int MAX_TOP = 100;
+
+    private final SalesRollupService salesRollupService;
+    private final int capacity;
+    private final DailySketchCache<DaySketch> cache;
+
+    @Autowired
+    public ProductLeaderboardService(SalesRollupService salesRollupService,
+                                     @Value("${sales.leaderboard.capacity:64}") int capacity,
+                                     @Value("${sales.leaderboard.cache-days:400}") int cacheDays) {
+        this.salesRollupService = salesRollupService;
+        this.capacity = capacity;
+        this.cache = new DailySketchCache<>(cacheDays);
+    }
+
+    @EventListener
+    public void onSalesChanged(SalesChangedEvent event) {
+        cache.track(event.getChanges(), this::applyChanges);
+    }
+
+    @EventListener
+    public void onRollupRebuilt(SalesRollupRebuiltEvent event) {
+        cache.clear();
+    }
+
+    /**
+     * 查询 [startDate, endDate] 内按 metric 排序的前 k 个产品，region 为 null 表示全部区域。
+     * exact 为 true 时返回汇总表中的精确值；否则返回摘要估计值及误差范围。k 不能超过 MAX_TOP。
+     */
+    public List<ProductRankDTO> topProducts(LocalDate startDate, LocalDate endDate, String region,
+                                            Metric metric, int k, boolean exact) {
+        if (k > MAX_TOP) {
+            throw new IllegalArgumentException("排名数量不能超过 " + MAX_TOP);
+        }
+        LocalDateTime[] bounds = salesRollupService.dataBounds();
+        if (bounds == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        // 区间收缩到有数据的天，避免为空白日期建摘要
+        LocalDate start = max(startDate, bounds[0].toLocalDate());
+        LocalDate end = min(endDate, bounds[1].minusNanos(1).toLocalDate());
+        if (start.isAfter(end)) {
+            return new ArrayList<>();
+        }
+        if (ChronoUnit.DAYS.between(start, end) + 1 > cache.getMaxDays()) {
+            // 超出缓存天数的长区间直接读汇总表，粗粒度汇总行足够快
+            return exactTop(start, end, region, metric, k, null);
+        }
+
+        SpaceSavingSketch merged = cache.read(start, end, this::load, days -> merge(days, region, metric));
+        if (!exact) {
+            List<ProductRankDTO> result = new ArrayList<>();
+            for (SpaceSavingSketch.Estimate estimate : merged.top(k)) {
+                result.add(new ProductRankDTO(estimate.getItem(), estimate.getCount(),
+                        estimate.getLowerBound(), estimate.getUpperBound()));
+            }
+            return result;
+        }
+
+        List<String> candidates = new ArrayList<>();
+        for (SpaceSavingSketch.Estimate estimate : merged.top(capacity)) {
+            candidates.add(estimate.getItem());
+        }
+        List<ProductRankDTO> result = exactTop(start, end, region, metric, k, candidates);
+        // 第 k 名的精确值不低于摘要外任何产品的上界时，候选集之外不可能有产品进入前 k
+        double kth = result.size() >= k ? result.get(k - 1).getEstimate() : 0;
+        if (kth >= merged.getMissingBound()) {
+            return result;
+        }
+        return exactTop(start, end, region, metric, k, null);
+    }
+
+    private List<ProductRankDTO> exactTop(LocalDate start, LocalDate end, String region, Metric metric,
+                                          int k, Collection<String> products) {
+        List<RollupRow> rows = salesRollupService.query(start.atStartOfDay(), end.plusDays(1).atStartOfDay(),
+                null, true, false, products, region);
+        PriorityQueue<RollupRow> top = new PriorityQueue<>(k + 1,
+                Comparator.comparingDouble(row -> value(row, metric)));
+        for (RollupRow row : rows) {
+            top.offer(row);
+            if (top.size() > k) {
+                top.poll();
+            }
+        }
+
+        LinkedList<ProductRankDTO> result = new LinkedList<>();
+        while (!top.isEmpty()) {
+            RollupRow row = top.poll();
+            result.addFirst(new ProductRankDTO(row.getProductName(), row.getQuantity(), row.getAmount(),
+                    value(row, metric)));
+        }
+        return new ArrayList<>(result);
+    }
+
+    private Map<LocalDate, DaySketch> load(Set<LocalDate> days) {
+        Map<LocalDate, DaySketch> loaded = new HashMap<>();
+        LocalDate first = null;
+        LocalDate last = null;
+        for (LocalDate day : days) {
+            loaded.put(day, new DaySketch());
+            first = first == null ? day : min(first, day);
+            last = last == null ? day : max(last, day);
+        }
+        List<RollupRow> rows = salesRollupService.query(first.atStartOfDay(), last.plusDays(1).atStartOfDay(),
+                RollupLevel.DAY, true, true);
+        for (RollupRow row : rows) {
+            DaySketch sketch = loaded.get(row.getBucketStart().toLocalDate());
+            if (sketch != null) {
+                sketch.offer(row.getSalesRegion(), row.getProductName(),
+                        row.getQuantity(), row.getAmount().doubleValue());
+            }
+        }
+        return loaded;
+    }
+
+    private void applyChanges(DaySketch sketch, List<SalesChange> changes) {
+        for (SalesChange change : changes) {
+            sketch.offer(change.getSalesRegion(), change.getProductName(),
+                    change.getQuantity(), change.getTotalAmount().doubleValue());
+        }
+    }
+
+    private SpaceSavingSketch merge(List<DaySketch> days, String region, Metric metric) {
+        List<SpaceSavingSketch> sketches = new ArrayList<>();
+        for (DaySketch day : days) {
+            for (Map.Entry<String, SpaceSavingSketch[]> entry : day.regions.entrySet()) {
+                if (region == null || region.equals(entry.getKey())) {
+                    sketches.add(entry.getValue()[metric.ordinal()]);
+                }
+            }
+        }
+        return SpaceSavingSketch.merge(sketches, capacity);
+    }
+
+    private static double value(RollupRow row, Metric metric) {
+        return metric == Metric.QUANTITY ? row.getQuantity() : row.getAmount().doubleValue();
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    // 单日摘要：区域 -> [按销量, 按销售额]，下标对应 Metric 的顺序
+    private final class DaySketch {
+        private final Map<String, SpaceSavingSketch[]> regions = new HashMap<>();
+
+        private void offer(String region, String product, double quantity, double revenue) {
+            SpaceSavingSketch[] sketches = regions.computeIfAbsent(region, key -> new SpaceSavingSketch[] {
+                    new SpaceSavingSketch(capacity), new SpaceSavingSketch(capacity)
+            });
+            sketches[Metric.QUANTITY.ordinal()].offer(product, quantity);
+            sketches[Metric.REVENUE.ordinal()].offer(product, revenue);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.sales.service;
+
+import com.example.sales.dto.SalesAnalyticsDTO;
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.event.SalesRollupRebuiltEvent;
+import com.example.sales.service.parallel.SingleFlight;
+import com.example.sales.service.rollup.RollupLevel;
+import com.example.sales.service.rollup.SalesRollupService;
+import com.example.sales.service.sketch.DailySketchCache;
+import com.example.sales.service.sketch.HyperLogLog;
+import com.example.sales.service.sketch.TDigest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 区间分析指标：去重产品数、活跃区域数（HyperLogLog）和订单金额分位数（t-digest）。
+ * 每天一份摘要，约 3KB，与当天订单量无关；任意区间由逐日摘要合并得到。
+ * 区间不能超过缓存的天数，否则每次读取都要重新扫描被淘汰的天。
+ */
+@Service
+public class SalesAnalyticsService {
+
+    private static final int HLL_PRECISION = 10;
+    private static final double DIGEST_COMPRESSION = 100;
+
+    private static final String DAY_ORDERS_SQL =
+        "SELECT s.sales_date, s.product_name, s.sales_region, s.total_amount " +
+        "FROM sales s WHERE s.sales_date >= ? AND s.sales_date < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SalesRollupService salesRollupService;
+    private final SingleFlight singleFlight;
+    private final DailySketchCache<DayStats> cache;
+
+    @Autowired
+    public SalesAnalyticsService(JdbcTemplate jdbcTemplate,
+                                 SalesRollupService salesRollupService,
+                                 SingleFlight singleFlight,
+                                 @Value("${sales.analytics.cache-days:400}") int cacheDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.salesRollupService = salesRollupService;
+        this.singleFlight = singleFlight;
+        this.cache = new DailySketchCache<>(cacheDays);
+    }
+
+    @EventListener
+    public void onSalesChanged(SalesChangedEvent event) {
+        cache.track(event.getChanges(), this::applyChanges);
+    }
+
+    // 汇总表对账有修正说明 sales 表曾被绕过服务修改，按天缓存的摘要同样可能过期
+    @EventListener
+    public void onRollupRebuilt(SalesRollupRebuiltEvent event) {
+        cache.clear();
+    }
+
+    /**
+     * 单次分析最多覆盖的天数，即按天缓存的摘要数。
+     */
+    public int getMaxDays() {
+        return cache.getMaxDays();
+    }
+
+    /**
+     * 按 granularity 分段统计 [startDate, endDate]，granularity 为 null 时整段作为一个区间。
+     * percentiles 为百分位（如 50、99.9）。与已有数据相交的部分超过缓存天数时抛出 IllegalArgumentException。
+     */
+    public List<SalesAnalyticsDTO> analyze(LocalDate startDate, LocalDate endDate, RollupLevel granularity,
+                                           List<Double> percentiles) {
+        if (granularity == RollupLevel.HOUR) {
+            throw new IllegalArgumentException("分析指标最小粒度为天");
+        }
+        for (Double percentile : percentiles) {
+            if (percentile == null || percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("百分位须在 0 到 100 之间: " + percentile);
+            }
+        }
+
+        LocalDateTime[] bounds = salesRollupService.dataBounds();
+        if (bounds == null) {
+            return new ArrayList<>();
+        }
+        LocalDate start = startDate.isAfter(bounds[0].toLocalDate()) ? startDate : bounds[0].toLocalDate();
+        LocalDate last = bounds[1].minusNanos(1).toLocalDate();
+        LocalDate end = endDate.isBefore(last) ? endDate : last;
+        if (start.isAfter(end)) {
+            return new ArrayList<>();
+        }
+        if (end.toEpochDay() - start.toEpochDay() + 1 > cache.getMaxDays()) {
+            throw new IllegalArgumentException("分析区间不能超过 " + cache.getMaxDays() + " 天");
+        }
+
+        return singleFlight.execute("analytics", () -> cache.read(start, end, this::load, days -> {
+            List<SalesAnalyticsDTO> result = new ArrayList<>();
+            int from = 0;
+            while (from < days.size()) {
+                LocalDate periodStart = start.plusDays(from);
+                LocalDate periodEnd = granularity == null ? end
+                        : granularity.next(granularity.truncate(periodStart.atStartOfDay())).toLocalDate().minusDays(1);
+                int to = (int) Math.min(days.size(), from + periodEnd.toEpochDay() - periodStart.toEpochDay() + 1);
+                result.add(summarize(days.subList(from, to), periodStart, start.plusDays(to - 1), percentiles));
+                from = to;
+            }
+            return result;
+        }), start, end, granularity, percentiles);
+    }
+
+    private SalesAnalyticsDTO summarize(List<DayStats> days, LocalDate periodStart, LocalDate periodEnd,
+                                        List<Double> percentiles) {
+        HyperLogLog products = new HyperLogLog(HLL_PRECISION);
+        HyperLogLog regions = new HyperLogLog(HLL_PRECISION);
+        List<TDigest> digests = new ArrayList<>(days.size());
+        long orders = 0;
+        for (DayStats day : days) {
+            products.merge(day.products);
+            regions.merge(day.regions);
+            digests.add(day.amounts);
+            orders += day.orderCount;
+        }
+        TDigest amounts = TDigest.merge(digests, DIGEST_COMPRESSION);
+
+        SalesAnalyticsDTO dto = new SalesAnalyticsDTO();
+        dto.setPeriodStart(periodStart);
+        dto.setPeriodEnd(periodEnd);
+        dto.setOrderCount(orders);
+        dto.setUniqueProducts(orders > 0 ? products.cardinality() : 0L);
+        dto.setActiveRegions(orders > 0 ? regions.cardinality() : 0L);
+        dto.setDistinctRelativeError(products.relativeError());
+        for (Double percentile : percentiles) {
+            double value = amounts.quantile(percentile / 100);
+            dto.getOrderValuePercentiles().put("p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(),
+                    Double.isNaN(value) ? null : BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP));
+        }
+        return dto;
+    }
+
+    // 摘要需要逐笔订单金额，无法从汇总表推导，首次读取某天时扫描当天的 sales 记录；
+    // 缺失的天按连续区段分别扫描，不读取夹在中间的已缓存日期
+    private Map<LocalDate, DayStats> load(Set<LocalDate> days) {
+        Map<LocalDate, DayStats> loaded = new HashMap<>();
+        LocalDate runStart = null;
+        LocalDate runEnd = null;
+        for (LocalDate day : new TreeSet<>(days)) {
+            loaded.put(day, new DayStats());
+            if (runEnd != null && day.equals(runEnd.plusDays(1))) {
+                runEnd = day;
+                continue;
+            }
+            if (runStart != null) {
+                scan(runStart, runEnd, loaded);
+            }
+            runStart = day;
+            runEnd = day;
+        }
+        if (runStart != null) {
+            scan(runStart, runEnd, loaded);
+        }
+        return loaded;
+    }
+
+    // 只进只读的流式结果集逐行读取，内存占用与区间内订单数无关
+    private void scan(LocalDate first, LocalDate last, Map<LocalDate, DayStats> loaded) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(DAY_ORDERS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setTimestamp(1, Timestamp.valueOf(first.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(last.plusDays(1).atStartOfDay()));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            DayStats stats = loaded.get(rs.getTimestamp("sales_date").toLocalDateTime().toLocalDate());
+            if (stats != null) {
+                stats.add(rs.getString("product_name"), rs.getString("sales_region"),
+                        rs.getBigDecimal("total_amount"), 1);
+            }
+        });
+    }
+
+    private void applyChanges(DayStats stats, List<SalesChange> changes) {
+        for (SalesChange change : changes) {
+            stats.add(change.getProductName(), change.getSalesRegion(), change.getTotalAmount(), change.getOrderCount());
+        }
+    }
+
+    private static final class DayStats {
+        private final HyperLogLog products = new HyperLogLog(HLL_PRECISION);
+        private final HyperLogLog regions = new HyperLogLog(HLL_PRECISION);
+        private final TDigest amounts = new TDigest(DIGEST_COMPRESSION);
+        private long orderCount;
+
+        private void add(String product, String region, BigDecimal amount, int orders) {
+            if (product != null) {
+                products.offer(product);
+            }
+            if (region != null) {
+                regions.offer(region);
+            }
+            if (amount != null) {
+                amounts.add(amount.doubleValue());
+            }
+            orderCount += orders;
+        }
+    }
+}
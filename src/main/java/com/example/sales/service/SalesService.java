@@ -3,16 +3,35 @@ package com.example.sales.service;
 import com.example.sales.annotation.Loggable;
 import com.example.sales.dto.*;
 import com.example.sales.entity.Sales;
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
 import com.example.sales.repository.SalesRepository;
-import com.example.sales.repository.SalesRepository.ProductSalesStats;
+import com.example.sales.service.dictionary.DimensionDictionary;
+import com.example.sales.service.parallel.RangeSplitExecutor;
+import com.example.sales.service.parallel.SingleFlight;
+import com.example.sales.service.pivot.PivotPlanner;
+import com.example.sales.service.rollup.RollupLevel;
+import com.example.sales.service.rollup.RollupRow;
+import com.example.sales.service.rollup.SalesRollupService;
+import com.example.sales.service.search.ProductNameIndex;
+import com.example.sales.service.series.TrendDownsampler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,11 +43,52 @@ import java.time.LocalDate;
 @Service
 public class SalesService {
 
+    public enum CountMode {
+        // 不计算总数
+        NONE,
+        // 从汇总表估算
+        ESTIMATE,
+        // 对明细表执行 COUNT
+        EXACT
+    }
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String CURSOR_SEPARATOR = "|";
+    // 不按产品过滤时 IN 参数的占位值，JPQL 的 IN 不接受空列表
+    private static final List<String> ANY_PRODUCT = Collections.singletonList("");
+
     private final SalesRepository salesRepository;
+    private final SalesRollupService salesRollupService;
+    private final ProductNameIndex productNameIndex;
+    private final DimensionDictionary dimensionDictionary;
+    private final ProductLeaderboardService productLeaderboardService;
+    private final SalesStatisticsService salesStatisticsService;
+    private final PeriodComparisonService periodComparisonService;
+    private final RangeSplitExecutor rangeSplitExecutor;
+    private final SingleFlight singleFlight;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public SalesService(SalesRepository salesRepository) {
+    public SalesService(SalesRepository salesRepository,
+                        SalesRollupService salesRollupService,
+                        ProductNameIndex productNameIndex,
+                        DimensionDictionary dimensionDictionary,
+                        ProductLeaderboardService productLeaderboardService,
+                        SalesStatisticsService salesStatisticsService,
+                        PeriodComparisonService periodComparisonService,
+                        RangeSplitExecutor rangeSplitExecutor,
+                        SingleFlight singleFlight,
+                        ApplicationEventPublisher eventPublisher) {
         this.salesRepository = salesRepository;
+        this.salesRollupService = salesRollupService;
+        this.productNameIndex = productNameIndex;
+        this.dimensionDictionary = dimensionDictionary;
+        this.productLeaderboardService = productLeaderboardService;
+        this.salesStatisticsService = salesStatisticsService;
+        this.periodComparisonService = periodComparisonService;
+        this.rangeSplitExecutor = rangeSplitExecutor;
+        this.singleFlight = singleFlight;
+        this.eventPublisher = eventPublisher;
     }
 
     @Loggable(operation = "导入销售记录")
@@ -45,7 +105,9 @@ public class SalesService {
         sales.setUnitPrice(dto.getUnitPrice());
         sales.setTotalAmount(dto.getUnitPrice().multiply(BigDecimal.valueOf(dto.getSalesQuantity())));
 
-        return salesRepository.save(sales);
+        Sales saved = salesRepository.save(sales);
+        publishChanges(Collections.singletonList(SalesChange.added(saved)), null);
+        return saved;
     }
 
     @Loggable(operation = "批量导入销售记录")
@@ -55,7 +117,7 @@ public class SalesService {
             sales.setImportId(importId);
             sales.setImportBatch(importBatch);
         });
-        salesRepository.saveAll(salesList);
+        publishChanges(added(salesRepository.saveAll(salesList)), importId);
     }
 
     @Loggable(operation = "获取导入状态")
@@ -68,20 +130,21 @@ public class SalesService {
     }
 
     @Loggable(operation = "查询销售记录")
-    public Page<Sales> findSales(String productName, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable, String salesByRegion) {
+    @Transactional(readOnly = true)
+    public Page<SalesDTO> findSales(String productName, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable, String salesByRegion) {
         if (productName != null && !productName.isEmpty()) {
             if (startDate != null && endDate != null) {
                 return salesRepository.findByProductNameAndCreatedAtBetweenAndSalesRegion(
                         productName, startDate, endDate, salesByRegion, pageable);
             }
-            return salesRepository.findByProductNameContainingAndSalesRegion(productName, salesByRegion, pageable);
+            return findByProductName(productName, salesByRegion, pageable);
         }
 
         if (startDate != null && endDate != null) {
             return salesRepository.findBySalesDateBetween(startDate, endDate, pageable);
         }
 
-        return salesRepository.findAll(pageable);
+        return salesRepository.findSummaries(pageable);
     }
 
     @Loggable(operation = "添加销售记录")
@@ -89,18 +152,23 @@ public class SalesService {
     public Sales addSales(Sales sales) {
         // 计算总金额
         sales.setTotalAmount(sales.getUnitPrice().multiply(BigDecimal.valueOf(sales.getSalesQuantity())));
-        return salesRepository.save(sales);
+        Sales saved = salesRepository.save(sales);
+        publishChanges(Collections.singletonList(SalesChange.added(saved)), null);
+        return saved;
     }
 
     @Loggable(operation = "批量保存销售记录")
     @Transactional
     public void saveAll(List<Sales> salesList) {
-        salesRepository.saveAll(salesList);
+        publishChanges(added(salesRepository.saveAll(salesList)), null);
     }
 
     @Loggable(operation = "获取销量排名")
-    public Page<ProductSalesStats> getTopSellingProducts(Pageable pageable) {
-        return salesRepository.findTopSellingProducts(pageable);
+    public List<ProductRankDTO> getTopSellingProducts(LocalDate startDate, LocalDate endDate, String region,
+                                                      ProductLeaderboardService.Metric metric, int limit, boolean exact) {
+        return singleFlight.execute("topProducts",
+                () -> productLeaderboardService.topProducts(startDate, endDate, region, metric, limit, exact),
+                startDate, endDate, region, metric, limit, exact);
     }
 
     @Loggable(operation = "统计区域销售额")
@@ -116,13 +184,17 @@ public class SalesService {
 
     @Loggable(operation = "统计月度销售额")
     public List<SalesStatisticsDTO> getSalesByMonth() {
-        List<Object[]> results = salesRepository.findSalesByMonth();
-        return results.stream()
-                .map(row -> new SalesStatisticsDTO(
-                        (String) row[0],
-                        ((Number) row[1]).doubleValue()
-                ))
-                .collect(Collectors.toList());
+        // 整月直接读月汇总行，首尾不足一月的部分由日/小时汇总补齐
+        List<RollupRow> rows = salesRollupService.queryAllTime(RollupLevel.MONTH, false, false);
+        List<SalesStatisticsDTO> result = new ArrayList<>(rows.size());
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            RollupRow row = rows.get(i);
+            result.add(new SalesStatisticsDTO(
+                    row.getBucketStart().getYear() + "-" + row.getBucketStart().getMonthValue(),
+                    row.getAmount().doubleValue()
+            ));
+        }
+        return result;
     }
 
     @Loggable(operation = "计算时间段销售总额")
@@ -132,39 +204,60 @@ public class SalesService {
 
     @Loggable(operation = "获取所有销售区域")
     public List<String> getAllRegions() {
-        return salesRepository.findDistinctRegions();
+        List<String> regions = new ArrayList<>();
+        for (DimensionValueDTO value : dimensionDictionary.values(DimensionDictionary.Dimension.REGION)) {
+            regions.add(value.getValue());
+        }
+        return regions;
     }
 
     @Loggable(operation = "获取区域销售统计")
     public List<RegionalSalesStats> getRegionStatistics(String region, LocalDateTime startDate, LocalDateTime endDate) {
-        List<Object[]> results;
-        if (region != null && !region.isEmpty()) {
-            results = salesRepository.findRegionStatisticsForRegion(region, startDate, endDate);
-        } else {
-            results = salesRepository.findRegionStatisticsForAllRegions(startDate, endDate);
-        }
-
-        return results.stream()
-                .map(row -> new RegionalSalesStats(
-                        (String) row[0],
-                        ((Number) row[1]).doubleValue(),
-                        ((Number) row[2]).longValue()
-                ))
-                .collect(Collectors.toList());
+        return salesStatisticsService.getRegionalSalesStats(region, startDate, endDate);
     }
 
     // @Loggable(operation = "获取销售概览数据")
-    public SalesOverviewDTO getSalesOverview(LocalDate startDate, LocalDate endDate) {
+    public SalesOverviewDTO getSalesOverview(LocalDate startDate, LocalDate endDate, Integer maxPoints,
+                                             PeriodComparisonService.Offset compare) {
+        // 看板默认参数相同，同时打开时只计算一次
+        return singleFlight.execute("salesOverview",
+                () -> computeSalesOverview(startDate, endDate, maxPoints, compare),
+                startDate, endDate, maxPoints, compare);
+    }
+
+    private SalesOverviewDTO computeSalesOverview(LocalDate startDate, LocalDate endDate, Integer maxPoints,
+                                                  PeriodComparisonService.Offset compare) {
         LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
 
         SalesOverviewDTO overview = new SalesOverviewDTO();
 
-        // 计算总销售额和订单数
-        Double totalSales = calculateTotalSales(start, end);
-        overview.setTotalSales(BigDecimal.valueOf(totalSales != null ? totalSales : 0.0));
-        
-        Long sumSalesQuantity = salesRepository.sumSalesQuantityBySalesDateBetween(start, end);
+        // 区域汇总按月分片并发查询，合计由各区域累加得到，不再单独扫描总额和总销量
+        // 先按已有数据的首尾日期收窄区间，避免为空白月份提交分片
+        Map<String, SalesAggregateDTO> regions = new HashMap<>();
+        LocalDateTime[] bounds = salesRollupService.dataBounds();
+        if (bounds != null) {
+            LocalDate from = startDate.isAfter(bounds[0].toLocalDate()) ? startDate : bounds[0].toLocalDate();
+            LocalDate last = bounds[1].minusNanos(1).toLocalDate();
+            LocalDate to = endDate.isBefore(last) ? endDate : last;
+            if (!from.isAfter(to)) {
+                regions = rangeSplitExecutor.execute(from, to, (sliceStart, sliceEnd) -> {
+                    Map<String, SalesAggregateDTO> partial = new HashMap<>();
+                    salesStatisticsService.aggregate(Collections.singletonList(SalesStatisticsService.Dimension.REGION),
+                            sliceStart.atStartOfDay(), sliceEnd.atTime(23, 59, 59), null, null,
+                            row -> partial.put(row.getRegion(), row));
+                    return partial;
+                }, SalesService::mergeRegions);
+            }
+        }
+
+        BigDecimal totalSales = BigDecimal.ZERO;
+        long sumSalesQuantity = 0;
+        List<SalesAggregateDTO> regionRows = new ArrayList<>(regions.values());
+        for (SalesAggregateDTO row : regionRows) {
+            totalSales = totalSales.add(row.getTotalAmount());
+            sumSalesQuantity += row.getQuantity();
+        }
+        overview.setTotalSales(totalSales);
         overview.setTotalOrders(sumSalesQuantity);
 
         // 计算平均订单金额
@@ -176,64 +269,222 @@ public class SalesService {
         }
 
         // 获取区域销售数据
-        List<Object[]> regionSales = salesRepository.findRegionStatisticsForAllRegions(start, end);
-        Map<String, BigDecimal> salesByRegion = regionSales.stream()
-                .collect(Collectors.toMap(
-                        row -> (String) row[0],
-                        row -> BigDecimal.valueOf(((Number) row[1]).doubleValue()),
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new
-                ));
+        regionRows.sort(Comparator.comparing(SalesAggregateDTO::getTotalAmount).reversed());
+        Map<String, BigDecimal> salesByRegion = new LinkedHashMap<>();
+        for (SalesAggregateDTO row : regionRows) {
+            salesByRegion.put(row.getRegion(), row.getTotalAmount());
+        }
         overview.setSalesByRegion(salesByRegion);
 
         // 获取热销产品
-        List<Object[]> topProducts = salesRepository.findTopSellingProductsWithRevenue(start, end);
+        List<ProductRankDTO> topProducts = productLeaderboardService.topProducts(
+                startDate, endDate, null, ProductLeaderboardService.Metric.REVENUE, 5, true);
         List<TopProductDTO> topProductsList = topProducts.stream()
-                .map(row -> new TopProductDTO(
-                        (String) row[0],
-                        ((Number) row[1]).longValue(),
-                        BigDecimal.valueOf(((Number) row[2]).doubleValue())
-                ))
-                .limit(5)
+                .map(rank -> new TopProductDTO(rank.getProductName(), rank.getQuantity(), rank.getRevenue()))
                 .collect(Collectors.toList());
         overview.setTopProducts(topProductsList);
 
         // 获取销售趋势
-        List<Object[]> salesTrend = salesRepository.findSalesTrendByDay(start, end);
-        Map<String, BigDecimal> trendMap = salesTrend.stream()
-                .collect(Collectors.toMap(
-                        row -> row[0].toString(),
-                        row -> BigDecimal.valueOf(((Number) row[1]).doubleValue()),
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new
-                ));
-        overview.setSalesTrend(trendMap);
+        List<RollupRow> salesTrend = salesRollupService.query(
+                start, endDate.plusDays(1).atStartOfDay(), RollupLevel.DAY, false, false);
+        overview.setSalesTrend(downsampleTrend(salesTrend, maxPoints));
+
+        // 对比区间与当前区间在一次汇总扫描中读取
+        if (compare != null) {
+            PeriodComparisonDTO comparison = periodComparisonService.compare(startDate, endDate, compare);
+            overview.setComparison(comparison);
+            overview.setGrowthRate(comparison.getTotal().getAmountGrowthRate());
+        }
 
         return overview;
     }
 
+    // 趋势点超过 maxPoints 时按 LTTB 降采样，保持曲线形状
+    private Map<String, BigDecimal> downsampleTrend(List<RollupRow> salesTrend, Integer maxPoints) {
+        double[] x = new double[salesTrend.size()];
+        double[] y = new double[salesTrend.size()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = salesTrend.get(i).getBucketStart().toLocalDate().toEpochDay();
+            y[i] = salesTrend.get(i).getAmount().doubleValue();
+        }
+
+        Map<String, BigDecimal> trendMap = new LinkedHashMap<>();
+        for (int index : TrendDownsampler.selectIndices(x, y, maxPoints)) {
+            RollupRow row = salesTrend.get(index);
+            trendMap.put(row.getBucketStart().toLocalDate().toString(), row.getAmount());
+        }
+        return trendMap;
+    }
+
+    private static Map<String, SalesAggregateDTO> mergeRegions(Map<String, SalesAggregateDTO> a,
+                                                               Map<String, SalesAggregateDTO> b) {
+        for (SalesAggregateDTO row : b.values()) {
+            a.merge(row.getRegion(), row, (x, y) -> {
+                x.setTotalAmount(x.getTotalAmount().add(y.getTotalAmount()));
+                x.setQuantity(x.getQuantity() + y.getQuantity());
+                x.setOrderCount(x.getOrderCount() + y.getOrderCount());
+                return x;
+            });
+        }
+        return a;
+    }
+
+    private List<SalesChange> added(List<Sales> salesList) {
+        List<SalesChange> changes = new ArrayList<>(salesList.size());
+        for (Sales sales : salesList) {
+            changes.add(SalesChange.added(sales));
+        }
+        return changes;
+    }
+
+    private void publishChanges(List<SalesChange> changes, String importId) {
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new SalesChangedEvent(changes, importId));
+        }
+    }
+
     @Loggable(operation = "查询所有销售记录")
-    public Page<Sales> findAll(Pageable pageable) {
-        return salesRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public Page<SalesDTO> findAll(Pageable pageable) {
+        return salesRepository.findSummaries(pageable);
     }
 
     @Loggable(operation = "条件查询销售记录")
-    public Page<Sales> findByCondition(String productName, String salesRegion, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
-        return salesRepository.findByCondition(productName, salesRegion, startDate, endDate, pageable);
+    @Transactional(readOnly = true)
+    public Page<SalesDTO> findByCondition(String productName, String salesRegion, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
+        List<String> products = resolveProducts(productName);
+        if (products != null && products.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        return salesRepository.findByCondition(!inList(products), inList(products) ? products : ANY_PRODUCT,
+                likeKeyword(productName, products), salesRegion, startDate, endDate, pageable);
+    }
+
+    /**
+     * 游标翻页：按 (salesDate, id) 倒序，从 cursor 指向的记录之后取 size 条，不论翻到第几页都只读取一页的行。
+     * cursor 为空时从最新的记录开始；count 决定是否附带总数。
+     */
+    @Loggable(operation = "游标查询销售记录")
+    @Transactional(readOnly = true)
+    public SalesPageDTO findPage(String productName, String salesRegion, LocalDateTime startDate, LocalDateTime endDate,
+                                 String cursor, int size, CountMode count) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size 须在 1 到 " + MAX_PAGE_SIZE + " 之间");
+        }
+        LocalDateTime afterDate = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] position = decodeCursor(cursor);
+            try {
+                afterDate = LocalDateTime.parse(position[0]);
+                afterId = Long.valueOf(position[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("无效的游标: " + cursor, e);
+            }
+        }
+
+        List<String> products = resolveProducts(productName);
+        // 多取一条判断是否还有下一页；没有匹配的产品时不查询
+        List<SalesDTO> rows = products != null && products.isEmpty() ? Collections.emptyList()
+                : salesRepository.findPageAfter(!inList(products), inList(products) ? products : ANY_PRODUCT,
+                        likeKeyword(productName, products), salesRegion, startDate, endDate, afterDate, afterId,
+                        PageRequest.of(0, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<SalesDTO> content = hasMore ? new ArrayList<>(rows.subList(0, size)) : rows;
+
+        SalesPageDTO page = new SalesPageDTO();
+        page.setContent(content);
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            SalesDTO last = content.get(content.size() - 1);
+            page.setNextCursor(encodeCursor(last.getSalesDate(), last.getId()));
+        }
+        if (count == CountMode.EXACT) {
+            page.setTotal(products != null && products.isEmpty() ? 0
+                    : salesRepository.countByCondition(!inList(products), inList(products) ? products : ANY_PRODUCT,
+                            likeKeyword(productName, products), salesRegion, startDate, endDate));
+            page.setTotalEstimated(false);
+        } else if (count == CountMode.ESTIMATE) {
+            page.setTotal(estimateCount(products, salesRegion, startDate, endDate));
+            page.setTotalEstimated(true);
+        }
+        return page;
+    }
+
+    // 从小时级以上的汇总行累加订单数，区间边界不在整点时按所在小时计入
+    private long estimateCount(List<String> products, String salesRegion, LocalDateTime startDate, LocalDateTime endDate) {
+        LocalDateTime[] bounds = salesRollupService.dataBounds();
+        if (bounds == null) {
+            return 0;
+        }
+        LocalDateTime start = startDate != null && startDate.isAfter(bounds[0]) ? startDate : bounds[0];
+        LocalDateTime end = endDate != null && endDate.plusSeconds(1).isBefore(bounds[1]) ? endDate.plusSeconds(1) : bounds[1];
+        if (!start.isBefore(end)) {
+            return 0;
+        }
+        long total = 0;
+        for (RollupRow row : salesRollupService.query(start, end, null, false, false, products, salesRegion)) {
+            total += row.getOrderCount();
+        }
+        return total;
+    }
+
+    // 产品名称包含匹配先由内存索引解析为精确名称再以 IN 下推；null 表示不按产品过滤，空列表表示没有匹配的产品
+    private List<String> resolveProducts(String productName) {
+        return productName == null || productName.isEmpty() ? null : productNameIndex.resolve(productName);
+    }
+
+    // 解析出的名称不超过上限时以 IN 下推；过多时关键字本身区分度很低，改用 LIKE，避免每次绑定数千个参数、
+    // 且每种列表长度各生成一份执行计划（上限与透视、导出路径一致）
+    private static boolean inList(List<String> products) {
+        return products != null && products.size() <= PivotPlanner.MAX_PRODUCT_LIST;
+    }
+
+    private static String likeKeyword(String productName, List<String> products) {
+        return products != null && !inList(products) ? productName : null;
+    }
+
+    private static String encodeCursor(LocalDateTime salesDate, Long id) {
+        String position = salesDate + CURSOR_SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        String position;
+        try {
+            position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的游标: " + cursor, e);
+        }
+        int separator = position.lastIndexOf(CURSOR_SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+        return new String[] {position.substring(0, separator), position.substring(separator + 1)};
     }
 
     @Loggable(operation = "按产品名称查询")
-    public Page<Sales> findByProductName(String productName, String salesRegion, Pageable pageable) {
-        return salesRepository.findByProductNameContainingAndSalesRegion(productName, salesRegion, pageable);
+    @Transactional(readOnly = true)
+    public Page<SalesDTO> findByProductName(String productName, String salesRegion, Pageable pageable) {
+        List<String> products = productNameIndex.resolve(productName);
+        if (products.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        if (!inList(products)) {
+            return salesRepository.findByProductNameContainingAndSalesRegion(productName, salesRegion, pageable);
+        }
+        return salesRepository.findByProductNameInAndSalesRegion(products, salesRegion, pageable);
     }
 
     @Loggable(operation = "按日期范围查询")
-    public Page<Sales> findByDateRange(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public Page<SalesDTO> findByDateRange(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
         return salesRepository.findBySalesDateBetween(startDate, endDate, pageable);
     }
 
     @Loggable(operation = "按产品名称和日期范围查询")
-    public Page<Sales> findByProductNameAndSalesRegionAndDateRange(
+    @Transactional(readOnly = true)
+    public Page<SalesDTO> findByProductNameAndSalesRegionAndDateRange(
             String productName,
             String salesRegion,
             LocalDateTime startDate,
@@ -252,38 +503,49 @@ public class SalesService {
                     BigDecimal.valueOf(sales.getSalesQuantity())
             ));
         }
-        return salesRepository.save(sales);
+        Sales saved = salesRepository.save(sales);
+        publishChanges(Collections.singletonList(SalesChange.added(saved)), null);
+        return saved;
     }
 
     @Loggable(operation = "更新销售记录")
     @Transactional
     public Sales update(Sales sales) {
         // 确保记录存在
-        if (!salesRepository.existsById(sales.getId())) {
-            throw new IllegalArgumentException("销售记录不存在: " + sales.getId());
-        }
+        Sales existing = salesRepository.findById(sales.getId())
+                .orElseThrow(() -> new IllegalArgumentException("销售记录不存在: " + sales.getId()));
+        // 保存前记录旧值，更新在汇总中拆成一删一增
+        SalesChange removed = SalesChange.removed(existing);
         // 计算总金额
         if (sales.getUnitPrice() != null && sales.getSalesQuantity() != null) {
             sales.setTotalAmount(sales.getUnitPrice().multiply(
                     BigDecimal.valueOf(sales.getSalesQuantity())
             ));
         }
-        return salesRepository.save(sales);
+        Sales saved = salesRepository.save(sales);
+        List<SalesChange> changes = new ArrayList<>();
+        changes.add(removed);
+        changes.add(SalesChange.added(saved));
+        publishChanges(changes, null);
+        return saved;
     }
 
     @Loggable(operation = "删除销售记录")
     @Transactional
     public void delete(Long id) {
-        if (!salesRepository.existsById(id)) {
-            throw new IllegalArgumentException("销售记录不存在: " + id);
-        }
-        salesRepository.deleteById(id);
+        Sales existing = salesRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("销售记录不存在: " + id));
+        salesRepository.delete(existing);
+        publishChanges(Collections.singletonList(SalesChange.removed(existing)), null);
     }
 
+    @Loggable(operation = "分页查询销售记录")
+    @Transactional(readOnly = true)
     public Page<SalesDTO> querySales(String productName, String salesRegion,
                                      String startDate, String endDate,
                                      int page, int size) {
-        // Implementation of querySales method
-        return null; // Placeholder return, actual implementation needed
+        LocalDateTime start = startDate != null && !startDate.isEmpty() ? LocalDateTime.parse(startDate) : null;
+        LocalDateTime end = endDate != null && !endDate.isEmpty() ? LocalDateTime.parse(endDate) : null;
+        return findByCondition(productName, salesRegion, start, end, PageRequest.of(page, size));
     }
 }
@@ -1,61 +1,165 @@
 package com.example.sales.service;
 
 import com.example.sales.dto.RegionalSalesStats;
+import com.example.sales.dto.SalesAggregateDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDate;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+/**
+ * 基于 sales 表的 JDBC 统计服务。按区域、产品、天、月任意组合分组，
+ * 结果以只进只读的流式结果集逐行读取（不缓冲整个结果集），逐行映射后交给调用方。
+ */
 @Service
 public class SalesStatisticsService {
 
+    public enum Dimension {
+        REGION("s.sales_region"),
+        PRODUCT("s.product_name"),
+        DAY("s.sales_day"),
+        MONTH("s.sales_month");
+
+        private final String column;
+
+        Dimension(String column) {
+            this.column = column;
+        }
+
+        private boolean isTime() {
+            return this == DAY || this == MONTH;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    public SalesStatisticsService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
 
-    public List<RegionalSalesStats> getRegionalSalesStats(String region, LocalDate startDate, LocalDate endDate) {
-        StringBuilder sql = new StringBuilder(
-            "SELECT region, " +
-            "       SUM(amount) as total_amount, " +
-            "       COUNT(*) as order_count " +
-            "FROM sales_orders " +
-            "WHERE order_date BETWEEN ? AND ? "
-        );
+    /**
+     * 统计 [startDate, endDate] 内的销售额、销量和订单数，按 dimensions 分组；
+     * region、productName 为 null 时不过滤。有时间维度时按时间升序，否则按销售额降序。
+     */
+    public List<SalesAggregateDTO> aggregate(List<Dimension> dimensions, LocalDateTime startDate, LocalDateTime endDate,
+                                             String region, String productName) {
+        List<SalesAggregateDTO> result = new ArrayList<>();
+        aggregate(dimensions, startDate, endDate, region, productName, result::add);
+        return result;
+    }
 
-        if (region != null && !region.isEmpty()) {
-            sql.append("AND region = ? ");
+    /**
+     * 同上，结果逐行回调，不在内存中保留整个结果集。
+     */
+    public void aggregate(List<Dimension> dimensions, LocalDateTime startDate, LocalDateTime endDate,
+                          String region, String productName, Consumer<SalesAggregateDTO> consumer) {
+        Set<Dimension> groupBy = new LinkedHashSet<>(dimensions);
+        if (groupBy.contains(Dimension.DAY) && groupBy.contains(Dimension.MONTH)) {
+            throw new IllegalArgumentException("天和月不能同时作为分组维度");
         }
 
-        sql.append("GROUP BY region ORDER BY total_amount DESC");
+        StringBuilder select = new StringBuilder("SELECT ");
+        StringBuilder group = new StringBuilder();
+        String timeColumn = null;
+        for (Dimension dimension : groupBy) {
+            select.append(dimension.column).append(", ");
+            group.append(group.length() == 0 ? " GROUP BY " : ", ").append(dimension.column);
+            if (dimension.isTime()) {
+                timeColumn = dimension.column;
+            }
+        }
+        select.append("SUM(s.total_amount) AS total_amount, SUM(s.sales_quantity) AS quantity, COUNT(*) AS order_count ")
+              .append("FROM sales s WHERE s.sales_date BETWEEN ? AND ?");
 
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(startDate));
+        args.add(Timestamp.valueOf(endDate));
         if (region != null && !region.isEmpty()) {
-            return jdbcTemplate.query(
-                sql.toString(),
-                (rs, rowNum) -> new RegionalSalesStats(
-                    rs.getString("region"),
-                    rs.getDouble("total_amount"),
-                    rs.getLong("order_count")
-                ),
-                startDate, endDate, region
-            );
-        } else {
-            return jdbcTemplate.query(
-                sql.toString(),
-                (rs, rowNum) -> new RegionalSalesStats(
-                    rs.getString("region"),
-                    rs.getDouble("total_amount"),
-                    rs.getLong("order_count")
-                ),
-                startDate, endDate
-            );
+            select.append(" AND s.sales_region = ?");
+            args.add(region);
+        }
+        if (productName != null && !productName.isEmpty()) {
+            select.append(" AND s.product_name = ?");
+            args.add(productName);
+        }
+        select.append(group);
+        if (!groupBy.isEmpty()) {
+            select.append(timeColumn != null ? " ORDER BY " + timeColumn + ", total_amount DESC" : " ORDER BY total_amount DESC");
         }
+
+        RowMapper<SalesAggregateDTO> mapper = mapperFor(groupBy);
+        int[] rowNum = {0};
+        jdbcTemplate.query(streaming(select.toString(), args),
+                (RowCallbackHandler) rs -> consumer.accept(mapper.mapRow(rs, rowNum[0]++)));
+    }
+
+    public List<RegionalSalesStats> getRegionalSalesStats(String region, LocalDateTime startDate, LocalDateTime endDate) {
+        List<RegionalSalesStats> result = new ArrayList<>();
+        aggregate(Collections.singletonList(Dimension.REGION), startDate, endDate, region, null, row -> result.add(new RegionalSalesStats(
+                row.getRegion(), row.getTotalAmount().doubleValue(), row.getOrderCount())));
+        return result;
+    }
+
+    // fetchSize 为 Integer.MIN_VALUE 时 MySQL 驱动逐行流式读取，否则一次读入整个结果集；
+    // 读完之前同一连接不能执行其他语句，回调只做内存中的处理
+    private PreparedStatementCreator streaming(String sql, List<Object> args) {
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        };
     }
 
-    public List<String> getAllRegions() {
-        return jdbcTemplate.queryForList(
-            "SELECT DISTINCT region FROM sales_orders ORDER BY region",
-            String.class
-        );
+    // 按分组维度预先确定列下标，逐行映射时不再按列名查找
+    private static RowMapper<SalesAggregateDTO> mapperFor(Set<Dimension> groupBy) {
+        Map<Dimension, Integer> columns = new EnumMap<>(Dimension.class);
+        int index = 1;
+        for (Dimension dimension : groupBy) {
+            columns.put(dimension, index++);
+        }
+        int amountColumn = index;
+        Integer regionColumn = columns.get(Dimension.REGION);
+        Integer productColumn = columns.get(Dimension.PRODUCT);
+        Integer periodColumn = columns.containsKey(Dimension.DAY) ? columns.get(Dimension.DAY) : columns.get(Dimension.MONTH);
+
+        return (rs, rowNum) -> {
+            SalesAggregateDTO row = new SalesAggregateDTO();
+            if (regionColumn != null) {
+                row.setRegion(rs.getString(regionColumn));
+            }
+            if (productColumn != null) {
+                row.setProductName(rs.getString(productColumn));
+            }
+            if (periodColumn != null) {
+                Date period = rs.getDate(periodColumn);
+                row.setPeriod(period != null ? period.toLocalDate() : null);
+            }
+            BigDecimal amount = rs.getBigDecimal(amountColumn);
+            row.setTotalAmount(amount != null ? amount : BigDecimal.ZERO);
+            row.setQuantity(rs.getLong(amountColumn + 1));
+            row.setOrderCount(rs.getLong(amountColumn + 2));
+            return row;
+        };
     }
 }
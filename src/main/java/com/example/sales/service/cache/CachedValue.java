@@ -0,0 +1,29 @@
+package com.example.sales.service.cache;
+
+/**
+ * 缓存读取结果。ageSeconds 为结果计算完成至今的秒数，stale 表示已过期或已被写入失效、正在后台刷新。
+ */
+public class CachedValue<T> {
+
+    private final T value;
+    private final long ageSeconds;
+    private final boolean stale;
+
+    public CachedValue(T value, long ageSeconds, boolean stale) {
+        this.value = value;
+        this.ageSeconds = ageSeconds;
+        this.stale = stale;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public long getAgeSeconds() {
+        return ageSeconds;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+}
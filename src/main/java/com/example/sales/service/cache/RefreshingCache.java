@@ -0,0 +1,232 @@
+package com.example.sales.service.cache;
+
+import com.example.sales.service.parallel.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 过期后仍返回旧值、同时在后台重新计算的结果缓存（stale-while-revalidate）。
+ * 调度线程按衰减后的请求频率挑出最热的若干个键，在过期前主动刷新；冷门且已过期的键被移除。
+ * 写入只推进全局代数，已缓存的结果随之视为过期，不逐键清除。
+ */
+@Slf4j
+@Component
+public class RefreshingCache {
+
+    private static final String SINGLE_FLIGHT_PREFIX = "cache:";
+
+    private final ThreadPoolTaskScheduler scheduler;
+    private final SingleFlight singleFlight;
+    private final long ttlMillis;
+    private final long intervalMillis;
+    private final int hotKeys;
+    private final int maxEntries;
+    private final ConcurrentMap<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public RefreshingCache(@Qualifier("analyticsRefreshScheduler") ThreadPoolTaskScheduler scheduler,
+                           SingleFlight singleFlight,
+                           @Value("${sales.refresh.ttl-seconds:300}") long ttlSeconds,
+                           @Value("${sales.refresh.interval-seconds:30}") long intervalSeconds,
+                           @Value("${sales.refresh.hot-keys:20}") int hotKeys,
+                           @Value("${sales.refresh.max-entries:200}") int maxEntries) {
+        this.scheduler = scheduler;
+        this.singleFlight = singleFlight;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.intervalMillis = intervalSeconds * 1000;
+        this.hotKeys = hotKeys;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refreshHotEntries, Duration.ofMillis(intervalMillis));
+    }
+
+    /**
+     * 读取 operation + params 对应的结果。首次读取在当前线程计算（相同的并发首次读取合并为一次）；
+     * 之后过期时立即返回旧值并提交后台刷新。
+     * 首次读取的计算期间有写入时（包括合并到写入之前开始的计算），结果标记为 stale，调用方不应按新版本缓存它。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CachedValue<T> get(String operation, Supplier<T> loader, Object... params) {
+        List<Object> key = key(operation, params);
+        Entry entry = entries.get(key);
+        Snapshot snapshot = entry != null ? entry.snapshot : null;
+        if (snapshot == null) {
+            // 代数在合并的计算内读取，所有等待者共享计算开始时的代数，而不是各自到达时的代数。
+            // loader 内部往往也按同一 operation 和参数合并（如 SalesService.getSalesOverview），缓存使用单独的键，
+            // 否则内层调用会等待外层自己的 future，永远不返回
+            Snapshot loaded = singleFlight.execute(SINGLE_FLIGHT_PREFIX + operation, () -> {
+                long startGeneration = generation.get();
+                return new Snapshot(loader.get(), 0, startGeneration);
+            }, params);
+            T value = (T) loaded.value;
+            if (entry == null) {
+                Entry created = new Entry(key, loader);
+                Entry existing = entries.putIfAbsent(key, created);
+                entry = existing != null ? existing : created;
+                if (existing == null) {
+                    created.hits.increment();
+                    evictIfFull();
+                } else {
+                    existing.hits.increment();
+                }
+            } else {
+                entry.hits.increment();
+            }
+            // 刷新线程可能已写入更新的结果，只在仍为空时写入
+            if (entry.snapshot == null) {
+                entry.snapshot = new Snapshot(value, System.currentTimeMillis(), loaded.generation);
+            }
+            return new CachedValue<>(value, 0, loaded.generation != generation.get());
+        }
+
+        entry.hits.increment();
+        long now = System.currentTimeMillis();
+        boolean stale = isStale(snapshot, now, 0);
+        if (stale && !entry.refreshing.get()) {
+            Entry target = entry;
+            scheduler.execute(() -> refresh(target));
+        }
+        return new CachedValue<>((T) snapshot.value, (now - snapshot.loadedAt) / 1000, stale);
+    }
+
+    /**
+     * 预热：不存在时登记并计算，已存在但过期时立即重新计算。在调用线程上执行。
+     */
+    public void warm(String operation, Supplier<?> loader, Object... params) {
+        List<Object> key = key(operation, params);
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(k, loader));
+        if (entry.snapshot == null || isStale(entry.snapshot, System.currentTimeMillis(), 0)) {
+            refresh(entry);
+        }
+    }
+
+    /**
+     * 在刷新线程上执行任务，用于启动和导入完成后的预热。
+     */
+    public void runInBackground(Runnable task) {
+        scheduler.execute(task);
+    }
+
+    /**
+     * 数据已变化，现有结果全部视为过期：下次读取返回旧值并触发刷新，热点键在下一轮调度时刷新。
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    // 按衰减后的请求频率排序：前 hotKeys 个在下一轮调度前会过期的提前刷新，其余冷门且已过期的移除
+    private void refreshHotEntries() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        for (Entry entry : all) {
+            entry.frequency = entry.frequency / 2 + entry.hits.sumThenReset();
+        }
+        all.sort((a, b) -> Double.compare(b.frequency, a.frequency));
+
+        for (int i = 0; i < all.size(); i++) {
+            Entry entry = all.get(i);
+            Snapshot snapshot = entry.snapshot;
+            long now = System.currentTimeMillis();
+            if (i < hotKeys) {
+                if (snapshot == null || isStale(snapshot, now, intervalMillis)) {
+                    refresh(entry);
+                }
+            } else if (entry.frequency < 1 && (snapshot == null || isStale(snapshot, now, 0))) {
+                entries.remove(entry.key, entry);
+            }
+        }
+    }
+
+    private void refresh(Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long startGeneration = generation.get();
+            long begin = System.currentTimeMillis();
+            Object value = entry.loader.get();
+            entry.snapshot = new Snapshot(value, System.currentTimeMillis(), startGeneration);
+            log.debug("刷新 {} 耗时 {} ms", entry.key, System.currentTimeMillis() - begin);
+        } catch (RuntimeException e) {
+            // 刷新失败时保留旧值，下次读取或调度时重试
+            log.warn("刷新 {} 失败: {}", entry.key, e.getMessage());
+        } finally {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private boolean isStale(Snapshot snapshot, long now, long aheadMillis) {
+        return snapshot.generation != generation.get() || now - snapshot.loadedAt + aheadMillis >= ttlMillis;
+    }
+
+    private void evictIfFull() {
+        while (entries.size() > maxEntries) {
+            Entry coldest = null;
+            for (Entry entry : entries.values()) {
+                if (coldest == null || entry.score() < coldest.score()) {
+                    coldest = entry;
+                }
+            }
+            if (coldest == null || !entries.remove(coldest.key, coldest)) {
+                return;
+            }
+        }
+    }
+
+    private static List<Object> key(String operation, Object[] params) {
+        List<Object> key = new ArrayList<>(params.length + 1);
+        key.add(operation);
+        key.addAll(Arrays.asList(params));
+        return key;
+    }
+
+    private static final class Snapshot {
+        private final Object value;
+        private final long loadedAt;
+        private final long generation;
+
+        private Snapshot(Object value, long loadedAt, long generation) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.generation = generation;
+        }
+    }
+
+    private static final class Entry {
+        private final List<Object> key;
+        private final Supplier<?> loader;
+        private final LongAdder hits = new LongAdder();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile Snapshot snapshot;
+        // 只由调度线程更新
+        private volatile double frequency;
+
+        private Entry(List<Object> key, Supplier<?> loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+
+        private double score() {
+            return frequency + hits.sum();
+        }
+    }
+}
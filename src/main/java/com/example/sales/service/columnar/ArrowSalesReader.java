@@ -0,0 +1,397 @@
+package com.example.sales.service.columnar;
+
+import com.example.sales.dto.SalesImportDTO;
+import org.apache.arrow.dataset.file.FileFormat;
+import org.apache.arrow.dataset.file.FileSystemDatasetFactory;
+import org.apache.arrow.dataset.jni.NativeMemoryPool;
+import org.apache.arrow.dataset.scanner.ScanOptions;
+import org.apache.arrow.dataset.scanner.Scanner;
+import org.apache.arrow.dataset.source.Dataset;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FloatingPointVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 读取 Arrow IPC 文件（Feather V2）中的销售数据。五个导入列按列名匹配，可以是数据库列名、驼峰名或导入模板的中文表头，
+ * 其余列忽略。记录批次分给多个线程并行读取，每个线程独立打开文件；每批先按列整体转换成数组，再组装成导入行。
+ * 字符串列可以是字典编码，字典在每个线程中只解码一次。
+ * Parquet 文件经 arrow-dataset 的原生扫描器按导入列投影读取，解出的记录批次走同一套转换，转换后的导入行交给多个线程处理。
+ */
+@Component
+public class ArrowSalesReader {
+
+    /**
+     * 处理一个记录批次转换出的导入行，会被多个线程同时调用。rowIndex 为行在批次内的序号，从 1 开始。
+     */
+    @FunctionalInterface
+    public interface BatchHandler {
+        void handle(int batchIndex, List<SalesImportDTO> rows);
+    }
+
+    private enum Column {
+        PRODUCT_NAME("product_name", "产品名称"),
+        SALES_REGION("sales_region", "销售区域"),
+        SALES_DATE("sales_date", "销售日期"),
+        SALES_QUANTITY("sales_quantity", "销售数量"),
+        UNIT_PRICE("unit_price", "销售单价");
+
+        private final String columnName;
+        private final String header;
+
+        Column(String columnName, String header) {
+            this.columnName = columnName;
+            this.header = header;
+        }
+
+        // 忽略大小写和下划线，product_name 与 productName 都能匹配
+        private boolean matches(String fieldName) {
+            String normalized = fieldName.trim().replace("_", "").toLowerCase(Locale.ROOT);
+            return normalized.equals(columnName.replace("_", "")) || fieldName.trim().equals(header);
+        }
+    }
+
+    // Parquet 扫描每个记录批次的最大行数
+    private static final long PARQUET_BATCH_ROWS = 32768;
+
+    private final Executor executor;
+    private final int threads;
+    private final BufferAllocator allocator = new RootAllocator();
+
+    @Autowired
+    public ArrowSalesReader(@Qualifier("columnarReadExecutor") Executor executor,
+                            @Value("${sales.import.read-threads:4}") int threads) {
+        this.executor = executor;
+        this.threads = threads;
+    }
+
+    @PreDestroy
+    public void close() {
+        allocator.close();
+    }
+
+    /**
+     * 读取 file 中的全部记录批次，返回批次数。缺少导入列或列类型无法转换时抛出 IllegalArgumentException。
+     */
+    public int read(Path file, BatchHandler handler) throws IOException {
+        int blockCount;
+        try (BufferAllocator readerAllocator = allocator.newChildAllocator("schema", 0, Long.MAX_VALUE);
+             ArrowFileReader reader = new ArrowFileReader(FileChannel.open(file, StandardOpenOption.READ), readerAllocator)) {
+            resolveColumns(reader.getVectorSchemaRoot().getSchema());
+            blockCount = reader.getRecordBlocks().size();
+        }
+
+        int workers = Math.max(1, Math.min(threads, blockCount));
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            int first = worker;
+            tasks.add(CompletableFuture.runAsync(() -> readBlocks(file, first, workers, handler), executor));
+        }
+        await(tasks);
+        return blockCount;
+    }
+
+    /**
+     * 读取 Parquet 文件中的全部行，只解码五个导入列，返回记录批次数。
+     * 扫描器按顺序产出记录批次并复用向量，批次在当前线程转换，处理交给读取线程池，同时处理中的批次不超过读取线程数。
+     */
+    public int readParquet(Path file, BatchHandler handler) throws IOException {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        int batchCount = 0;
+        Semaphore inFlight = new Semaphore(threads);
+        try (BufferAllocator readerAllocator = allocator.newChildAllocator("parquet", 0, Long.MAX_VALUE);
+             FileSystemDatasetFactory factory = new FileSystemDatasetFactory(readerAllocator, NativeMemoryPool.getDefault(),
+                     FileFormat.PARQUET, file.toUri().toString())) {
+            Map<Column, String> columns = resolveColumns(factory.inspect());
+            ScanOptions options = new ScanOptions(PARQUET_BATCH_ROWS, Optional.of(columns.values().toArray(new String[0])));
+            try (Dataset dataset = factory.finish();
+                 Scanner scanner = dataset.newScan(options);
+                 ArrowReader reader = scanner.scanBatches()) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                Map<Column, FieldVector> vectors = new EnumMap<>(Column.class);
+                for (Map.Entry<Column, String> entry : columns.entrySet()) {
+                    vectors.put(entry.getKey(), root.getVector(entry.getValue()));
+                }
+                Map<Long, String[]> decoded = new HashMap<>();
+                while (!failed(tasks) && reader.loadNextBatch()) {
+                    List<SalesImportDTO> rows = convert(root.getRowCount(), vectors, reader.getDictionaryVectors(), decoded);
+                    int batch = batchCount++;
+                    inFlight.acquire();
+                    tasks.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            handler.handle(batch, rows);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }, executor));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parquet 读取被中断");
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Parquet 文件读取失败: " + e.getMessage(), e);
+        } finally {
+            // 扫描出错时也等已交出的批次处理完，调用方据此统计的结果才完整
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).handle((result, error) -> null).join();
+        }
+        await(tasks);
+        return batchCount;
+    }
+
+    private static boolean failed(List<CompletableFuture<Void>> tasks) {
+        for (CompletableFuture<Void> task : tasks) {
+            if (task.isCompletedExceptionally()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void await(List<CompletableFuture<Void>> tasks) throws IOException {
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    // 第 first 个线程读取第 first、first + workers、... 个记录批次
+    private void readBlocks(Path file, int first, int workers, BatchHandler handler) {
+        try (BufferAllocator workerAllocator = allocator.newChildAllocator("reader-" + first, 0, Long.MAX_VALUE);
+             ArrowFileReader reader = new ArrowFileReader(FileChannel.open(file, StandardOpenOption.READ), workerAllocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            Map<Column, FieldVector> vectors = new EnumMap<>(Column.class);
+            for (Map.Entry<Column, String> entry : resolveColumns(root.getSchema()).entrySet()) {
+                vectors.put(entry.getKey(), root.getVector(entry.getValue()));
+            }
+            Map<Long, String[]> decoded = new HashMap<>();
+            List<ArrowBlock> blocks = reader.getRecordBlocks();
+            for (int block = first; block < blocks.size(); block += workers) {
+                reader.loadRecordBatch(blocks.get(block));
+                handler.handle(block, convert(root.getRowCount(), vectors, reader.getDictionaryVectors(), decoded));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<Column, String> resolveColumns(Schema schema) {
+        Map<Column, String> names = new EnumMap<>(Column.class);
+        for (Field field : schema.getFields()) {
+            for (Column column : Column.values()) {
+                if (!names.containsKey(column) && column.matches(field.getName())) {
+                    names.put(column, field.getName());
+                }
+            }
+        }
+        List<String> missing = new ArrayList<>();
+        for (Column column : Column.values()) {
+            if (!names.containsKey(column)) {
+                missing.add(column.columnName);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("文件缺少列: " + String.join(", ", missing));
+        }
+        return names;
+    }
+
+    private static List<SalesImportDTO> convert(int rowCount, Map<Column, FieldVector> vectors,
+                                                Map<Long, Dictionary> dictionaries, Map<Long, String[]> decoded) {
+        String[] products = strings(vectors.get(Column.PRODUCT_NAME), rowCount, dictionaries, decoded);
+        String[] regions = strings(vectors.get(Column.SALES_REGION), rowCount, dictionaries, decoded);
+        Date[] dates = dates(vectors.get(Column.SALES_DATE), rowCount);
+        Integer[] quantities = integers(vectors.get(Column.SALES_QUANTITY), rowCount);
+        BigDecimal[] prices = decimals(vectors.get(Column.UNIT_PRICE), rowCount);
+
+        List<SalesImportDTO> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            SalesImportDTO row = new SalesImportDTO();
+            row.setProductName(products[i]);
+            row.setSalesRegion(regions[i]);
+            row.setSalesDate(dates[i]);
+            row.setSalesQuantity(quantities[i]);
+            row.setUnitPrice(prices[i]);
+            row.setRowIndex(i + 1);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static String[] strings(FieldVector vector, int rowCount, Map<Long, Dictionary> dictionaries,
+                                    Map<Long, String[]> decoded) {
+        String[] values = new String[rowCount];
+        DictionaryEncoding encoding = vector.getField().getDictionary();
+        if (encoding != null) {
+            String[] dictionary = decode(dictionaries.get(encoding.getId()), decoded, encoding.getId());
+            BaseIntVector indices = (BaseIntVector) vector;
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = indices.isNull(i) ? null : dictionary[(int) indices.getValueAsLong(i)];
+            }
+        } else if (vector instanceof VarCharVector) {
+            VarCharVector strings = (VarCharVector) vector;
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = strings.isNull(i) ? null : new String(strings.get(i), StandardCharsets.UTF_8);
+            }
+        } else {
+            throw unsupported(vector);
+        }
+        return values;
+    }
+
+    // 字典向量的取值数变化（增量字典）时重新解码
+    private static String[] decode(Dictionary dictionary, Map<Long, String[]> decoded, long id) {
+        if (dictionary == null || !(dictionary.getVector() instanceof VarCharVector)) {
+            throw new IllegalArgumentException("文件中的字典 " + id + " 不是字符串字典");
+        }
+        VarCharVector vector = (VarCharVector) dictionary.getVector();
+        String[] values = decoded.get(id);
+        if (values == null || values.length != vector.getValueCount()) {
+            values = new String[vector.getValueCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = vector.isNull(i) ? null : new String(vector.get(i), StandardCharsets.UTF_8);
+            }
+            decoded.put(id, values);
+        }
+        return values;
+    }
+
+    // 不带时区的时间戳、日期按字面值解释为服务器本地时间，带时区的时间戳按时刻转换
+    private static Date[] dates(FieldVector vector, int rowCount) {
+        Date[] values = new Date[rowCount];
+        ZoneId zone = ZoneId.systemDefault();
+        if (vector instanceof TimeStampVector) {
+            ArrowType.Timestamp type = (ArrowType.Timestamp) vector.getField().getType();
+            TimeStampVector timestamps = (TimeStampVector) vector;
+            boolean zoned = type.getTimezone() != null;
+            for (int i = 0; i < rowCount; i++) {
+                if (timestamps.isNull(i)) {
+                    continue;
+                }
+                Instant instant = toInstant(timestamps.get(i), type);
+                values[i] = zoned ? Date.from(instant)
+                        : Date.from(LocalDateTime.ofInstant(instant, ZoneOffset.UTC).atZone(zone).toInstant());
+            }
+        } else if (vector instanceof DateDayVector) {
+            DateDayVector days = (DateDayVector) vector;
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = days.isNull(i) ? null : Date.from(LocalDate.ofEpochDay(days.get(i)).atStartOfDay(zone).toInstant());
+            }
+        } else if (vector instanceof DateMilliVector) {
+            DateMilliVector millis = (DateMilliVector) vector;
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = millis.isNull(i) ? null : Date.from(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(millis.get(i)), ZoneOffset.UTC).atZone(zone).toInstant());
+            }
+        } else {
+            throw unsupported(vector);
+        }
+        return values;
+    }
+
+    private static Instant toInstant(long value, ArrowType.Timestamp type) {
+        switch (type.getUnit()) {
+            case SECOND:
+                return Instant.ofEpochSecond(value);
+            case MILLISECOND:
+                return Instant.ofEpochMilli(value);
+            case MICROSECOND:
+                return Instant.ofEpochSecond(Math.floorDiv(value, 1_000_000L), Math.floorMod(value, 1_000_000L) * 1000);
+            default:
+                return Instant.ofEpochSecond(Math.floorDiv(value, 1_000_000_000L), Math.floorMod(value, 1_000_000_000L));
+        }
+    }
+
+    // 超出 int 范围的数量转成空值，由导入校验报告
+    private static Integer[] integers(FieldVector vector, int rowCount) {
+        if (!(vector instanceof BaseIntVector)) {
+            throw unsupported(vector);
+        }
+        BaseIntVector ints = (BaseIntVector) vector;
+        Integer[] values = new Integer[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            if (!ints.isNull(i)) {
+                long value = ints.getValueAsLong(i);
+                values[i] = value == (int) value ? (int) value : null;
+            }
+        }
+        return values;
+    }
+
+    private static BigDecimal[] decimals(FieldVector vector, int rowCount) {
+        BigDecimal[] values = new BigDecimal[rowCount];
+        if (vector instanceof DecimalVector) {
+            DecimalVector decimals = (DecimalVector) vector;
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = decimals.isNull(i) ? null : decimals.getObject(i);
+            }
+        } else if (vector instanceof FloatingPointVector) {
+            FloatingPointVector doubles = (FloatingPointVector) vector;
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = doubles.isNull(i) ? null : BigDecimal.valueOf(doubles.getValueAsDouble(i));
+            }
+        } else if (vector instanceof BaseIntVector) {
+            BaseIntVector ints = (BaseIntVector) vector;
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = ints.isNull(i) ? null : BigDecimal.valueOf(ints.getValueAsLong(i));
+            }
+        } else {
+            throw unsupported(vector);
+        }
+        return values;
+    }
+
+    private static IllegalArgumentException unsupported(FieldVector vector) {
+        return new IllegalArgumentException("文件中列 " + vector.getField().getName()
+                + " 的类型 " + vector.getField().getType() + " 无法导入");
+    }
+}
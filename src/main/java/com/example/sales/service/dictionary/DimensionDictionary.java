@@ -0,0 +1,395 @@
+package com.example.sales.service.dictionary;
+
+import com.example.sales.dto.DimensionValueDTO;
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.event.SalesRollupRebuiltEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 区域、产品的维度字典：每个取值的紧凑整数编号、首末销售日期和订单数，全部在内存中。
+ * 启动时从日汇总行加载，提交后按变更增量更新；汇总表对账修正后、或查找到未收录的取值时重建（后者有最小间隔），
+ * 删除造成的首末日期偏差留到下次重建修正。
+ * 编号一经分配不再变化，也不复用；订单数降为 0 的取值保留编号，但不出现在取值列表中。
+ * 编号分配写入 dimension_code 表，重启后先按表恢复，新取值接着往后编号。新编号在锁内只分配于内存，
+ * 由调度线程在锁外批量写入，提交中的写事务不等待数据库；导出在使用编号前调用 {@link #flushCodes()} 确保已落库。
+ */
+@Slf4j
+@Service
+public class DimensionDictionary {
+
+    public enum Dimension {
+        REGION,
+        PRODUCT
+    }
+
+    private static final String REBUILD_SQL =
+        "SELECT r.product_name, r.sales_region, MIN(r.bucket_start) AS first_day, " +
+        "MAX(r.bucket_start) AS last_day, SUM(r.order_count) AS order_count " +
+        "FROM sales_rollup r WHERE r.granularity = 'DAY' AND r.product_name <> '' " +
+        "GROUP BY r.product_name, r.sales_region";
+
+    private static final String CODES_SQL = "SELECT dimension, code, value FROM dimension_code ORDER BY dimension, code";
+
+    // 写入失败后重试时已写入的行忽略
+    private static final String SAVE_CODE_SQL = "INSERT IGNORE INTO dimension_code (dimension, code, value) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final long missRebuildMillis;
+    private final Map<Dimension, Table> tables = new EnumMap<>(Dimension.class);
+
+    private final Object loadLock = new Object();
+    private volatile boolean loaded;
+    // 重建查询进行期间提交的变更，查询结果套用后重放；查询开始前已提交、此时才收到通知的少量变更可能重复计入，由下次重建修正
+    private List<SalesChange> pendingDuringRebuild;
+    // 已分配但尚未写入 dimension_code 的编号，在锁内追加，写入时整批取出
+    private final List<Object[]> unsavedCodes = new ArrayList<>();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final AtomicLong lastMissRebuild = new AtomicLong();
+
+    @Autowired
+    public DimensionDictionary(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Qualifier("analyticsRefreshScheduler") ThreadPoolTaskScheduler scheduler,
+                               @Value("${sales.dimensions.miss-rebuild-minutes:10}") long missRebuildMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        // 调用方可能处在只读事务或提交后回调中，编号在独立事务中写入
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.scheduler = scheduler;
+        this.missRebuildMillis = Duration.ofMinutes(missRebuildMinutes).toMillis();
+        for (Dimension dimension : Dimension.values()) {
+            tables.put(dimension, new Table());
+        }
+    }
+
+    // 在汇总表初始化之后加载
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void start() {
+        ensureLoaded();
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            if (pendingDuringRebuild != null) {
+                return;
+            }
+            pendingDuringRebuild = new ArrayList<>();
+        }
+        long begin = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> codes = new ArrayList<>();
+        try {
+            if (!loaded) {
+                jdbcTemplate.query(CODES_SQL, (RowCallbackHandler) rs -> codes.add(new Object[] {
+                        Dimension.valueOf(rs.getString("dimension")), rs.getInt("code"), rs.getString("value")
+                }));
+                checkCodes(codes);
+            }
+            jdbcTemplate.query(REBUILD_SQL, (RowCallbackHandler) rs -> rows.add(new Object[] {
+                    rs.getString("product_name"), rs.getString("sales_region"),
+                    rs.getTimestamp("first_day").toLocalDateTime().toLocalDate(),
+                    rs.getTimestamp("last_day").toLocalDateTime().toLocalDate(),
+                    rs.getLong("order_count")
+            }));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendingDuringRebuild = null;
+            }
+            log.warn("维度字典重建失败: {}", e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            // 按编号顺序恢复已写入的分配，checkCodes 已保证编号从 0 起连续
+            for (Object[] code : codes) {
+                tables.get((Dimension) code[0]).entry((String) code[2]);
+            }
+            for (Table table : tables.values()) {
+                table.resetStats();
+            }
+            // 表中没有的取值按取值排序接着分配编号
+            rows.sort(Comparator.comparing((Object[] row) -> (String) row[0]).thenComparing(row -> (String) row[1]));
+            for (Object[] row : rows) {
+                LocalDate first = (LocalDate) row[2];
+                LocalDate last = (LocalDate) row[3];
+                long count = (Long) row[4];
+                entry(Dimension.PRODUCT, (String) row[0]).add(first, last, count);
+            }
+            rows.sort(Comparator.comparing(row -> (String) row[1]));
+            for (Object[] row : rows) {
+                entry(Dimension.REGION, (String) row[1]).add((LocalDate) row[2], (LocalDate) row[3], (Long) row[4]);
+            }
+            for (SalesChange change : pendingDuringRebuild) {
+                apply(change);
+            }
+            pendingDuringRebuild = null;
+            loaded = true;
+            scheduleSave();
+        }
+        log.info("维度字典重建完成，{} 个区域，{} 个产品，耗时 {} ms", tables.get(Dimension.REGION).size(),
+                tables.get(Dimension.PRODUCT).size(), System.currentTimeMillis() - begin);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void afterSalesCommitted(SalesChangedEvent event) {
+        for (SalesChange change : event.getChanges()) {
+            // 首次加载前不分配编号，以免占用表中已有的编号；已提交的变更由加载查询读到
+            if (loaded) {
+                apply(change);
+            }
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(change);
+            }
+        }
+        scheduleSave();
+    }
+
+    @EventListener
+    public void onRollupRebuilt(SalesRollupRebuiltEvent event) {
+        rebuild();
+    }
+
+    /**
+     * 有销售记录的取值，按取值排序。
+     */
+    public List<DimensionValueDTO> values(Dimension dimension) {
+        ensureLoaded();
+        List<DimensionValueDTO> result = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : tables.get(dimension).byValue.values()) {
+                if (entry.rowCount > 0) {
+                    result.add(entry.toDTO());
+                }
+            }
+        }
+        result.sort(Comparator.comparing(DimensionValueDTO::getValue));
+        return result;
+    }
+
+    /**
+     * 所有出现过的取值，包括订单数已降为 0 的，按取值排序。
+     */
+    public List<String> allValues(Dimension dimension) {
+        ensureLoaded();
+        List<String> result = new ArrayList<>(tables.get(dimension).byValue.keySet());
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * 所有出现过的取值按编号排列，下标即编号。编号只增不减，先取得的列表是后取得的列表的前缀。
+     */
+    public List<String> valuesById(Dimension dimension) {
+        ensureLoaded();
+        Entry[] byId = tables.get(dimension).byId;
+        List<String> result = new ArrayList<>(byId.length);
+        for (Entry entry : byId) {
+            result.add(entry.value);
+        }
+        return result;
+    }
+
+    /**
+     * 取值对应的编号，未出现过的取值返回 null。
+     */
+    public Integer idOf(Dimension dimension, String value) {
+        ensureLoaded();
+        Entry entry = tables.get(dimension).byValue.get(value);
+        if (entry == null) {
+            rebuildOnMiss();
+            return null;
+        }
+        return entry.id;
+    }
+
+    /**
+     * 在调用线程上写入尚未落库的编号，返回之前分配的编号是否都已写入。导出在取得字典快照之后调用。
+     */
+    public boolean flushCodes() {
+        saveCodes();
+        synchronized (this) {
+            return unsavedCodes.isEmpty();
+        }
+    }
+
+    /**
+     * 编号对应的取值，未分配的编号返回 null。
+     */
+    public String valueOf(Dimension dimension, int id) {
+        ensureLoaded();
+        Entry[] byId = tables.get(dimension).byId;
+        return id >= 0 && id < byId.length ? byId[id].value : null;
+    }
+
+    // 首次加载期间的读取等待加载完成，不返回空字典
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (!loaded) {
+                rebuild();
+            }
+        }
+    }
+
+    private void apply(SalesChange change) {
+        LocalDate day = change.getSalesDate().toLocalDate();
+        if (change.getProductName() != null) {
+            entry(Dimension.PRODUCT, change.getProductName()).add(day, day, change.getOrderCount());
+        }
+        if (change.getSalesRegion() != null) {
+            entry(Dimension.REGION, change.getSalesRegion()).add(day, day, change.getOrderCount());
+        }
+    }
+
+    private static void checkCodes(List<Object[]> codes) {
+        Map<Dimension, Set<String>> seen = new EnumMap<>(Dimension.class);
+        for (Object[] code : codes) {
+            Set<String> values = seen.computeIfAbsent((Dimension) code[0], dimension -> new HashSet<>());
+            if ((Integer) code[1] != values.size() || !values.add((String) code[2])) {
+                throw new IllegalStateException("dimension_code 编号不连续或取值重复: " + code[0] + " " + code[1]);
+            }
+        }
+    }
+
+    // 新分配的编号记入待写入列表
+    private Entry entry(Dimension dimension, String value) {
+        Table table = tables.get(dimension);
+        int size = table.size();
+        Entry entry = table.entry(value);
+        if (table.size() > size) {
+            unsavedCodes.add(new Object[] {dimension.name(), entry.id, value});
+        }
+        return entry;
+    }
+
+    // 在锁内调用，只提交写入任务，不等待数据库
+    private void scheduleSave() {
+        if (!unsavedCodes.isEmpty() && saveScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::saveCodes);
+        }
+    }
+
+    // 在锁外写入一批；INSERT IGNORE 使并发或重试的写入与顺序无关。失败的放回，下次分配或导出时重试
+    private void saveCodes() {
+        saveScheduled.set(false);
+        List<Object[]> batch;
+        synchronized (this) {
+            if (unsavedCodes.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(unsavedCodes);
+            unsavedCodes.clear();
+        }
+        try {
+            requiresNew.execute(status -> jdbcTemplate.batchUpdate(SAVE_CODE_SQL, batch));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                unsavedCodes.addAll(0, batch);
+            }
+            log.warn("维度编号写入失败，{} 个待重试: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    // 查找到未收录的取值说明字典可能漏掉了变更（如绕过服务直接写表），在后台重建，两次之间至少间隔 missRebuildMillis
+    private void rebuildOnMiss() {
+        long now = System.currentTimeMillis();
+        long last = lastMissRebuild.get();
+        if (now - last >= missRebuildMillis && lastMissRebuild.compareAndSet(last, now)) {
+            scheduler.execute(this::rebuild);
+        }
+    }
+
+    // 写入都在 DimensionDictionary 的锁内，编号查找不加锁
+    private static final class Table {
+        private final Map<String, Entry> byValue = new ConcurrentHashMap<>();
+        private volatile Entry[] byId = new Entry[0];
+
+        private Entry entry(String value) {
+            Entry entry = byValue.get(value);
+            if (entry == null) {
+                Entry[] grown = Arrays.copyOf(byId, byId.length + 1);
+                entry = new Entry(byId.length, value);
+                grown[entry.id] = entry;
+                byId = grown;
+                byValue.put(value, entry);
+            }
+            return entry;
+        }
+
+        private void resetStats() {
+            for (Entry entry : byId) {
+                entry.firstDate = null;
+                entry.lastDate = null;
+                entry.rowCount = 0;
+            }
+        }
+
+        private int size() {
+            return byId.length;
+        }
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final String value;
+        private LocalDate firstDate;
+        private LocalDate lastDate;
+        private long rowCount;
+
+        private Entry(int id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        // 删除只减少订单数，首末日期保留到下次重建
+        private void add(LocalDate first, LocalDate last, long count) {
+            rowCount += count;
+            if (count > 0) {
+                if (firstDate == null || first.isBefore(firstDate)) {
+                    firstDate = first;
+                }
+                if (lastDate == null || last.isAfter(lastDate)) {
+                    lastDate = last;
+                }
+            }
+        }
+
+        private DimensionValueDTO toDTO() {
+            DimensionValueDTO dto = new DimensionValueDTO();
+            dto.setId(id);
+            dto.setValue(value);
+            dto.setFirstDate(firstDate != null ? firstDate.toString() : null);
+            dto.setLastDate(lastDate != null ? lastDate.toString() : null);
+            dto.setRowCount(rowCount);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.example.sales.service.export;
+
+import com.example.sales.dto.ExportFileDTO;
+import com.example.sales.event.ImportCompletedEvent;
+import com.example.sales.service.dictionary.DimensionDictionary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.dataset.file.DatasetFileWriter;
+import org.apache.arrow.dataset.file.FileFormat;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * 把 sales 导出成 Arrow IPC 文件，供离线分析直接内存映射读取，不再经由接口反复查询。
+ * 按月一个文件（months/sales-yyyy-MM.arrow），各月在导出线程池中并行生成，每 BATCH_ROWS 行一个记录批次；
+ * 导入批次可以单独增量导出（imports/sales-import-{importId}.arrow），只处理行数与清单记录不一致的批次。
+ * 产品、区域以维度字典编号作字典编码。编号持久化在 dimension_code 表，重启后不变，各文件间一致；
+ * 每个文件带写入时的字典快照，后写的是先写的前缀扩展，拼接多个文件时用最新文件的字典解码。
+ * 文件先写到同目录的临时文件，完成后原子替换，读取方不会看到写了一半的文件。
+ * 开启 sales.export.parquet 时，每个 Arrow 文件旁再生成同名的 Parquet 文件（经 arrow-dataset 的原生写入器，不依赖 Hadoop），
+ * 由写好的 Arrow 文件转换而来，内容与字典编码一致。
+ */
+@Slf4j
+@Service
+public class ArrowExportService {
+
+    private static final String SELECT_SQL =
+        "SELECT s.id, s.sales_date, s.product_name, s.sales_region, s.sales_quantity, s.unit_price, s.total_amount " +
+        "FROM sales s ";
+    private static final String MONTH_SQL = SELECT_SQL +
+        "WHERE s.sales_date >= ? AND s.sales_date < ? ORDER BY s.sales_date, s.id";
+    private static final String IMPORT_SQL = SELECT_SQL + "WHERE s.import_id = ? ORDER BY s.id";
+    private static final String IMPORT_COUNTS_SQL =
+        "SELECT s.import_id, COUNT(*) AS row_count FROM sales s WHERE s.import_id IS NOT NULL GROUP BY s.import_id";
+
+    private static final int BATCH_ROWS = 64 * 1024;
+    private static final String MONTHS_DIR = "months";
+    private static final String IMPORTS_DIR = "imports";
+    private static final String MANIFEST = "manifest.json";
+    private static final String ARROW_SUFFIX = ".arrow";
+    private static final String PARQUET_SUFFIX = ".parquet";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DimensionDictionary dimensionDictionary;
+    private final ObjectMapper objectMapper;
+    private final Executor exportExecutor;
+    private final Path exportDir;
+    private final boolean incremental;
+    private final boolean parquet;
+    private final BufferAllocator allocator = new RootAllocator();
+    private final Object manifestLock = new Object();
+
+    @Autowired
+    public ArrowExportService(JdbcTemplate jdbcTemplate,
+                              DimensionDictionary dimensionDictionary,
+                              ObjectMapper objectMapper,
+                              @Qualifier("exportExecutor") Executor exportExecutor,
+                              @Value("${sales.export.dir:export}") String exportDir,
+                              @Value("${sales.export.incremental:false}") boolean incremental,
+                              @Value("${sales.export.parquet:false}") boolean parquet) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dimensionDictionary = dimensionDictionary;
+        this.objectMapper = objectMapper;
+        this.exportExecutor = exportExecutor;
+        this.exportDir = Paths.get(exportDir).toAbsolutePath();
+        this.incremental = incremental;
+        this.parquet = parquet;
+    }
+
+    @PreDestroy
+    public void close() {
+        allocator.close();
+    }
+
+    /**
+     * 重新生成 [startDate, endDate] 覆盖的各月文件，没有数据的月份删除已有文件。
+     */
+    public CompletableFuture<Map<String, Object>> exportMonths(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        List<String> partitions = new ArrayList<>();
+        List<CompletableFuture<ExportFileDTO>> tasks = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(startDate); !month.isAfter(YearMonth.from(endDate)); month = month.plusMonths(1)) {
+            YearMonth current = month;
+            partitions.add(current.toString());
+            tasks.add(CompletableFuture.supplyAsync(() -> write(current.toString(),
+                    Paths.get(MONTHS_DIR, "sales-" + current + ARROW_SUFFIX), MONTH_SQL,
+                    Timestamp.valueOf(current.atDay(1).atStartOfDay()),
+                    Timestamp.valueOf(current.plusMonths(1).atDay(1).atStartOfDay())), exportExecutor));
+        }
+        return collect(partitions, tasks);
+    }
+
+    /**
+     * 增量导出导入批次：只重新生成行数与清单不一致的批次，已被清理的批次删除文件。
+     */
+    public CompletableFuture<Map<String, Object>> exportImports() {
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query(IMPORT_COUNTS_SQL,
+                (RowCallbackHandler) rs -> counts.put(rs.getString("import_id"), rs.getLong("row_count")));
+
+        Map<String, Long> exported;
+        synchronized (manifestLock) {
+            exported = readManifest();
+            for (String importId : new ArrayList<>(exported.keySet())) {
+                if (!counts.containsKey(importId)) {
+                    deleteQuietly(importFile(importId));
+                    deleteQuietly(parquetFile(importFile(importId)));
+                    exported.remove(importId);
+                }
+            }
+            writeManifest(exported);
+        }
+
+        List<String> partitions = new ArrayList<>();
+        List<CompletableFuture<ExportFileDTO>> tasks = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            String importId = entry.getKey();
+            if (entry.getValue().equals(exported.get(importId))) {
+                continue;
+            }
+            partitions.add(importId);
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                ExportFileDTO file = write(importId, importFile(importId), IMPORT_SQL, importId);
+                recordImport(importId, file != null ? file.getRows() : 0L);
+                return file;
+            }, exportExecutor));
+        }
+        return collect(partitions, tasks);
+    }
+
+    // 导入完成后自动导出新批次，默认关闭
+    @EventListener
+    public void onImportCompleted(ImportCompletedEvent event) {
+        if (incremental) {
+            exportImports().thenAccept(result -> log.info("导入 {} 完成后增量导出: {}", event.getImportId(), result.get("status")));
+        }
+    }
+
+    private ExportFileDTO write(String partition, Path relativePath, String sql, Object... args) {
+        Path target = exportDir.resolve(relativePath);
+        Path parquetTarget = exportDir.resolve(parquetFile(relativePath));
+        long begin = System.currentTimeMillis();
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            long rows;
+            try (BufferAllocator taskAllocator = allocator.newChildAllocator(partition, 0, Long.MAX_VALUE);
+                 ArrowFileSink sink = new ArrowFileSink(temp, taskAllocator)) {
+                query(sql, args, sink);
+                rows = sink.finish();
+            }
+            if (rows == 0) {
+                Files.delete(temp);
+                Files.deleteIfExists(target);
+                Files.deleteIfExists(parquetTarget);
+                return null;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (parquet) {
+                writeParquet(partition, target, parquetTarget);
+            }
+            log.info("导出 {} 完成，共 {} 行，耗时 {} ms", relativePath, rows, System.currentTimeMillis() - begin);
+
+            ExportFileDTO file = new ExportFileDTO();
+            file.setPartition(partition);
+            file.setPath(relativePath.toString());
+            file.setRows(rows);
+            file.setBytes(Files.size(target));
+            if (parquet) {
+                file.setParquetPath(parquetFile(relativePath).toString());
+                file.setParquetBytes(Files.size(parquetTarget));
+            }
+            return file;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * 把写好的 Arrow 文件转换成 Parquet。写入器只接受目录，输出到同目录的临时子目录，完成后把生成的文件原子移到目标位置。
+     */
+    private void writeParquet(String partition, Path source, Path target) throws IOException {
+        Path tempDir = Files.createTempDirectory(target.getParent(), target.getFileName().toString());
+        try {
+            try (BufferAllocator taskAllocator = allocator.newChildAllocator(partition + PARQUET_SUFFIX, 0, Long.MAX_VALUE);
+                 ArrowFileReader reader = new ArrowFileReader(FileChannel.open(source, StandardOpenOption.READ), taskAllocator)) {
+                DatasetFileWriter.write(taskAllocator, reader, FileFormat.PARQUET, tempDir.toUri().toString());
+            }
+            Path written;
+            try (Stream<Path> files = Files.list(tempDir)) {
+                written = files.filter(path -> path.toString().endsWith(PARQUET_SUFFIX)).findFirst()
+                    .orElseThrow(() -> new IOException("未生成 Parquet 文件: " + target.getFileName()));
+            }
+            Files.move(written, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            try (Stream<Path> files = Files.list(tempDir)) {
+                files.forEach(this::deleteQuietly);
+            }
+            deleteQuietly(tempDir);
+        }
+    }
+
+    // 只进只读且 fetchSize 为 Integer.MIN_VALUE 时 MySQL 驱动逐行流式读取，否则一次读入整个结果集
+    private void query(String sql, Object[] args, ArrowFileSink sink) throws IOException {
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE);
+                for (int i = 0; i < args.length; i++) {
+                    ps.setObject(i + 1, args[i]);
+                }
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    sink.add(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private CompletableFuture<Map<String, Object>> collect(List<String> partitions, List<CompletableFuture<ExportFileDTO>> tasks) {
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).handle((ignored, error) -> {
+            List<ExportFileDTO> files = new ArrayList<>();
+            List<String> errorMessages = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    ExportFileDTO file = tasks.get(i).join();
+                    if (file != null) {
+                        files.add(file);
+                    }
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    log.error("导出 {} 失败", partitions.get(i), cause);
+                    errorMessages.add(partitions.get(i) + ": " + cause.getMessage());
+                }
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("status", errorMessages.isEmpty() ? "success" : "error");
+            result.put("exportDir", exportDir.toString());
+            result.put("files", files);
+            result.put("errorMessages", errorMessages);
+            return result;
+        });
+    }
+
+    private Path importFile(String importId) {
+        return Paths.get(IMPORTS_DIR, "sales-import-" + importId + ARROW_SUFFIX);
+    }
+
+    private Path parquetFile(Path arrowFile) {
+        String name = arrowFile.getFileName().toString();
+        return arrowFile.resolveSibling(name.substring(0, name.length() - ARROW_SUFFIX.length()) + PARQUET_SUFFIX);
+    }
+
+    private void recordImport(String importId, long rows) {
+        synchronized (manifestLock) {
+            Map<String, Long> exported = readManifest();
+            exported.put(importId, rows);
+            writeManifest(exported);
+        }
+    }
+
+    // 清单记录每个已导出批次的行数
+    private Map<String, Long> readManifest() {
+        Path manifest = exportDir.resolve(IMPORTS_DIR).resolve(MANIFEST);
+        Map<String, Long> exported = new TreeMap<>();
+        if (!Files.exists(manifest)) {
+            return exported;
+        }
+        try {
+            Map<?, ?> content = objectMapper.readValue(Files.readAllBytes(manifest), Map.class);
+            for (Map.Entry<?, ?> entry : content.entrySet()) {
+                exported.put(String.valueOf(entry.getKey()), ((Number) entry.getValue()).longValue());
+            }
+            return exported;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeManifest(Map<String, Long> exported) {
+        Path manifest = exportDir.resolve(IMPORTS_DIR).resolve(MANIFEST);
+        try {
+            Files.createDirectories(manifest.getParent());
+            Path temp = Files.createTempFile(manifest.getParent(), MANIFEST, ".tmp");
+            Files.write(temp, objectMapper.writeValueAsBytes(exported));
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path.isAbsolute() ? path : exportDir.resolve(path));
+        } catch (IOException e) {
+            log.warn("删除 {} 失败: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 一个 Arrow 文件的写入：收到第一行时取维度字典快照写出字典，之后每 BATCH_ROWS 行写一个记录批次。
+     * 快照在查询开始执行之后取得，此前提交的取值都已进入字典；仍查不到的取值说明字典尚未更新，本次导出失败，稍后重试。
+     */
+    private final class ArrowFileSink implements Closeable {
+        private final Path path;
+        private final BufferAllocator allocator;
+        private FileChannel channel;
+        private VectorSchemaRoot root;
+        private VarCharVector productDictionary;
+        private VarCharVector regionDictionary;
+        private ArrowFileWriter writer;
+        private BigIntVector id;
+        private TimeStampMilliVector salesDate;
+        private IntVector product;
+        private IntVector region;
+        private IntVector quantity;
+        private DecimalVector unitPrice;
+        private DecimalVector totalAmount;
+        private int productCount;
+        private int regionCount;
+        private int size;
+        private long rows;
+
+        private ArrowFileSink(Path path, BufferAllocator allocator) {
+            this.path = path;
+            this.allocator = allocator;
+        }
+
+        private void add(ResultSet rs) throws SQLException, IOException {
+            if (writer == null) {
+                open();
+            }
+            id.setSafe(size, rs.getLong(1));
+            salesDate.setSafe(size, rs.getTimestamp(2).toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+            product.setSafe(size, encode(DimensionDictionary.Dimension.PRODUCT, rs.getString(3), productCount));
+            region.setSafe(size, encode(DimensionDictionary.Dimension.REGION, rs.getString(4), regionCount));
+            quantity.setSafe(size, rs.getInt(5));
+            unitPrice.setSafe(size, rs.getBigDecimal(6).setScale(SalesArrowSchema.PRICE_SCALE, RoundingMode.HALF_UP));
+            totalAmount.setSafe(size, rs.getBigDecimal(7).setScale(SalesArrowSchema.PRICE_SCALE, RoundingMode.HALF_UP));
+            size++;
+            rows++;
+            if (size == BATCH_ROWS) {
+                writeBatch();
+            }
+        }
+
+        private long finish() throws IOException {
+            if (writer == null) {
+                return 0;
+            }
+            if (size > 0) {
+                writeBatch();
+            }
+            writer.end();
+            return rows;
+        }
+
+        private void open() throws IOException {
+            List<String> products = dimensionDictionary.valuesById(DimensionDictionary.Dimension.PRODUCT);
+            List<String> regions = dimensionDictionary.valuesById(DimensionDictionary.Dimension.REGION);
+            productCount = products.size();
+            regionCount = regions.size();
+            // 文件中的编号必须已经落库，重启后才能按同一编号解码
+            if (!dimensionDictionary.flushCodes()) {
+                throw new IllegalStateException("维度编号尚未写入数据库，请稍后重新导出");
+            }
+            productDictionary = dictionaryVector(SalesArrowSchema.PRODUCT_NAME, products);
+            regionDictionary = dictionaryVector(SalesArrowSchema.SALES_REGION, regions);
+            DictionaryProvider.MapDictionaryProvider provider = new DictionaryProvider.MapDictionaryProvider();
+            provider.put(new Dictionary(productDictionary, encodingOf(SalesArrowSchema.PRODUCT_NAME)));
+            provider.put(new Dictionary(regionDictionary, encodingOf(SalesArrowSchema.SALES_REGION)));
+
+            root = VectorSchemaRoot.create(SalesArrowSchema.SCHEMA, allocator);
+            root.allocateNew();
+            id = (BigIntVector) root.getVector(SalesArrowSchema.ID);
+            salesDate = (TimeStampMilliVector) root.getVector(SalesArrowSchema.SALES_DATE);
+            product = (IntVector) root.getVector(SalesArrowSchema.PRODUCT_NAME);
+            region = (IntVector) root.getVector(SalesArrowSchema.SALES_REGION);
+            quantity = (IntVector) root.getVector(SalesArrowSchema.SALES_QUANTITY);
+            unitPrice = (DecimalVector) root.getVector(SalesArrowSchema.UNIT_PRICE);
+            totalAmount = (DecimalVector) root.getVector(SalesArrowSchema.TOTAL_AMOUNT);
+
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writer = new ArrowFileWriter(root, provider, channel);
+            writer.start();
+        }
+
+        private void writeBatch() throws IOException {
+            root.setRowCount(size);
+            writer.writeBatch();
+            for (FieldVector vector : root.getFieldVectors()) {
+                vector.reset();
+            }
+            size = 0;
+        }
+
+        private int encode(DimensionDictionary.Dimension dimension, String value, int count) {
+            Integer code = dimensionDictionary.idOf(dimension, value);
+            if (code == null || code >= count) {
+                throw new IllegalStateException("维度字典尚未包含 " + value + "，请稍后重新导出");
+            }
+            return code;
+        }
+
+        private VarCharVector dictionaryVector(String name, List<String> values) {
+            VarCharVector vector = new VarCharVector(name + "_dictionary", allocator);
+            vector.allocateNew();
+            for (int i = 0; i < values.size(); i++) {
+                vector.setSafe(i, values.get(i).getBytes(StandardCharsets.UTF_8));
+            }
+            vector.setValueCount(values.size());
+            return vector;
+        }
+
+        private DictionaryEncoding encodingOf(String column) {
+            return SalesArrowSchema.SCHEMA.findField(column).getDictionary();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            } finally {
+                if (root != null) {
+                    root.close();
+                }
+                if (productDictionary != null) {
+                    productDictionary.close();
+                }
+                if (regionDictionary != null) {
+                    regionDictionary.close();
+                }
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.sales.service.export;
+
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.util.Arrays;
+
+/**
+ * sales 列式文件的列名和 Arrow 结构。列名与数据库列名一致；销售日期为不带时区的毫秒时间戳，按本地时间的字面值存储；
+ * 产品、区域以维度字典编号作字典编码，金额为 decimal(10, 2)。
+ */
+public final class SalesArrowSchema {
+
+    public static final String ID = "id";
+    public static final String SALES_DATE = "sales_date";
+    public static final String PRODUCT_NAME = "product_name";
+    public static final String SALES_REGION = "sales_region";
+    public static final String SALES_QUANTITY = "sales_quantity";
+    public static final String UNIT_PRICE = "unit_price";
+    public static final String TOTAL_AMOUNT = "total_amount";
+
+    public static final long PRODUCT_DICTIONARY_ID = 0;
+    public static final long REGION_DICTIONARY_ID = 1;
+    public static final int PRICE_PRECISION = 10;
+    public static final int PRICE_SCALE = 2;
+
+    private static final ArrowType.Int INDEX_TYPE = new ArrowType.Int(32, true);
+
+    public static final Schema SCHEMA = new Schema(Arrays.asList(
+            new Field(ID, FieldType.notNullable(new ArrowType.Int(64, true)), null),
+            new Field(SALES_DATE, FieldType.notNullable(new ArrowType.Timestamp(TimeUnit.MILLISECOND, null)), null),
+            new Field(PRODUCT_NAME, new FieldType(false, INDEX_TYPE,
+                    new DictionaryEncoding(PRODUCT_DICTIONARY_ID, false, INDEX_TYPE)), null),
+            new Field(SALES_REGION, new FieldType(false, INDEX_TYPE,
+                    new DictionaryEncoding(REGION_DICTIONARY_ID, false, INDEX_TYPE)), null),
+            new Field(SALES_QUANTITY, FieldType.notNullable(new ArrowType.Int(32, true)), null),
+            new Field(UNIT_PRICE, FieldType.notNullable(new ArrowType.Decimal(PRICE_PRECISION, PRICE_SCALE, 128)), null),
+            new Field(TOTAL_AMOUNT, FieldType.notNullable(new ArrowType.Decimal(PRICE_PRECISION, PRICE_SCALE, 128)), null)));
+
+    private SalesArrowSchema() {
+    }
+}
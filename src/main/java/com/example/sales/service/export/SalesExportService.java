@@ -0,0 +1,403 @@
+package com.example.sales.service.export;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import com.example.sales.dto.SalesExportDTO;
+import com.example.sales.service.pivot.PivotPlanner;
+import com.example.sales.service.search.ProductNameIndex;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 按筛选条件导出销售明细（CSV、XLSX）或以 NDJSON 流式输出。结果以 MySQL 流式结果集逐行读取，
+ * 服务端边执行边发送，不在临时表中物化整个结果，逐行写入输出流，内存占用与导出行数无关。
+ * 写出失败（通常是客户端断开）或线程被中断（异步请求超时）时取消查询并结束导出，不再继续读取剩余的行。
+ * XLSX 在结束时才输出整个文件，期间无法发现客户端断开，因此限制最大行数，超过时取消查询并失败。
+ */
+@Slf4j
+@Service
+public class SalesExportService {
+
+    public enum ExportFormat {
+        CSV("text/csv", "csv"),
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * NDJSON 可选输出的字段，名称与 SalesDTO 的 JSON 字段一致；id 总是输出，用于断点续传。
+     */
+    public enum SalesField {
+        ID("id"),
+        SALES_DATE("salesDate"),
+        PRODUCT_NAME("productName"),
+        SALES_REGION("salesRegion"),
+        SALES_QUANTITY("salesQuantity"),
+        UNIT_PRICE("unitPrice"),
+        TOTAL_AMOUNT("totalAmount");
+
+        private final String jsonName;
+
+        SalesField(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        /**
+         * 逗号分隔的字段名，为空时返回全部字段。
+         */
+        public static Set<SalesField> parse(String fields) {
+            if (fields == null || fields.trim().isEmpty()) {
+                return EnumSet.allOf(SalesField.class);
+            }
+            Set<SalesField> result = EnumSet.of(ID);
+            for (String name : fields.split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                SalesField field = null;
+                for (SalesField candidate : values()) {
+                    if (candidate.jsonName.equals(trimmed)) {
+                        field = candidate;
+                        break;
+                    }
+                }
+                if (field == null) {
+                    throw new IllegalArgumentException("未知字段: " + trimmed);
+                }
+                result.add(field);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 逐行处理结果集的当前行，抛出 IOException 时导出结束。
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void handle(ResultSet rs) throws SQLException, IOException;
+    }
+
+    private static final String SELECT_SQL =
+        "SELECT s.id, s.sales_date, s.product_name, s.sales_region, s.sales_quantity, s.unit_price, s.total_amount " +
+        "FROM sales s WHERE 1 = 1";
+    private static final String[] CSV_HEADERS = {"产品名称", "销售区域", "销售日期", "销售数量", "销售单价", "销售金额", "记录编号"};
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // xlsx 单个工作表最多 1048576 行，超过后换到下一个工作表
+    private static final int SHEET_ROWS = 1_000_000;
+    private static final int XLSX_CHUNK_ROWS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductNameIndex productNameIndex;
+    private final ObjectMapper objectMapper;
+    private final long xlsxMaxRows;
+
+    @Autowired
+    public SalesExportService(JdbcTemplate jdbcTemplate,
+                              ProductNameIndex productNameIndex,
+                              ObjectMapper objectMapper,
+                              @Value("${sales.export.xlsx-max-rows:1000000}") long xlsxMaxRows) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productNameIndex = productNameIndex;
+        this.objectMapper = objectMapper;
+        this.xlsxMaxRows = xlsxMaxRows;
+    }
+
+    /**
+     * 把筛选条件下的明细按 format 写入 out，不关闭 out。productName 为包含匹配，其余条件可为空。
+     */
+    public void export(ExportFormat format, String productName, String salesRegion,
+                       LocalDateTime startDate, LocalDateTime endDate, OutputStream out) throws IOException {
+        long begin = System.currentTimeMillis();
+        long rows = format == ExportFormat.XLSX
+                ? writeXlsx(productName, salesRegion, startDate, endDate, out)
+                : writeCsv(productName, salesRegion, startDate, endDate, out);
+        log.info("导出 {} 完成，共 {} 行，耗时 {} ms", format, rows, System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 按 id 顺序把 id 大于 afterId 的明细逐行写成 NDJSON，只输出 fields 中的字段，不关闭 out。
+     * 中断后以收到的最后一行的 id 作为 afterId 重新请求即可续传，不会重复或遗漏。
+     */
+    public long writeNdjson(String productName, String salesRegion, LocalDateTime startDate, LocalDateTime endDate,
+                            long afterId, Set<SalesField> fields, OutputStream out) throws IOException {
+        boolean[] selected = new boolean[SalesField.values().length];
+        for (SalesField field : fields) {
+            selected[field.ordinal()] = true;
+        }
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(new BufferedOutputStream(out, 64 * 1024));
+        // 行之间只用换行分隔，不要默认的根值分隔符（空格）
+        generator.setRootValueSeparator(null);
+        long[] rows = {0};
+        stream(productName, salesRegion, startDate, endDate, afterId, rs -> {
+            generator.writeStartObject();
+            generator.writeNumberField(SalesField.ID.jsonName, rs.getLong("id"));
+            if (selected[SalesField.SALES_DATE.ordinal()]) {
+                generator.writeStringField(SalesField.SALES_DATE.jsonName,
+                        rs.getTimestamp("sales_date").toLocalDateTime().toString());
+            }
+            if (selected[SalesField.PRODUCT_NAME.ordinal()]) {
+                generator.writeStringField(SalesField.PRODUCT_NAME.jsonName, rs.getString("product_name"));
+            }
+            if (selected[SalesField.SALES_REGION.ordinal()]) {
+                generator.writeStringField(SalesField.SALES_REGION.jsonName, rs.getString("sales_region"));
+            }
+            if (selected[SalesField.SALES_QUANTITY.ordinal()]) {
+                generator.writeNumberField(SalesField.SALES_QUANTITY.jsonName, rs.getInt("sales_quantity"));
+            }
+            if (selected[SalesField.UNIT_PRICE.ordinal()]) {
+                generator.writeFieldName(SalesField.UNIT_PRICE.jsonName);
+                generator.writeNumber(rs.getBigDecimal("unit_price"));
+            }
+            if (selected[SalesField.TOTAL_AMOUNT.ordinal()]) {
+                generator.writeFieldName(SalesField.TOTAL_AMOUNT.jsonName);
+                generator.writeNumber(rs.getBigDecimal("total_amount"));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            rows[0]++;
+        });
+        generator.flush();
+        return rows[0];
+    }
+
+    /**
+     * 逐行回调筛选条件下的明细；handler 抛出 IOException 时取消查询并原样抛出。
+     * afterId 为空时按 (sales_date, id) 顺序，否则按 id 顺序读取 id 大于 afterId 的行。
+     */
+    public void stream(String productName, String salesRegion, LocalDateTime startDate, LocalDateTime endDate,
+                       Long afterId, RowHandler handler) throws IOException {
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> args = new ArrayList<>();
+        if (productName != null) {
+            List<String> products = productNameIndex.resolve(productName);
+            if (products.isEmpty()) {
+                return;
+            }
+            // 匹配的产品过多时关键字本身区分度很低，仍用 LIKE
+            if (products.size() > PivotPlanner.MAX_PRODUCT_LIST) {
+                sql.append(" AND s.product_name LIKE CONCAT('%', ?, '%')");
+                args.add(productName);
+            } else {
+                StringJoiner in = new StringJoiner(", ", " AND s.product_name IN (", ")");
+                for (String product : products) {
+                    in.add("?");
+                    args.add(product);
+                }
+                sql.append(in);
+            }
+        }
+        if (salesRegion != null) {
+            sql.append(" AND s.sales_region = ?");
+            args.add(salesRegion);
+        }
+        if (startDate != null) {
+            sql.append(" AND s.sales_date >= ?");
+            args.add(Timestamp.valueOf(startDate));
+        }
+        if (endDate != null) {
+            sql.append(" AND s.sales_date <= ?");
+            args.add(Timestamp.valueOf(endDate));
+        }
+        if (afterId != null) {
+            // 按主键范围续读
+            sql.append(" AND s.id > ? ORDER BY s.id");
+            args.add(afterId);
+        } else {
+            // 与 idx_sales_date 的顺序一致（二级索引末尾隐含主键 id），不需要额外排序
+            sql.append(" ORDER BY s.sales_date, s.id");
+        }
+
+        try {
+            // 只进只读且 fetchSize 为 Integer.MIN_VALUE 时 MySQL 驱动逐行流式读取，否则一次读入整个结果集；
+            // 取消查询后服务端立即停止发送，关闭结果集时只需跳过已在途的少量行
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE);
+                for (int i = 0; i < args.size(); i++) {
+                    ps.setObject(i + 1, args.get(i));
+                }
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    // 异步请求超时时 Spring 会中断执行 StreamingResponseBody 的线程
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("导出已中止");
+                    }
+                    handler.handle(rs);
+                } catch (IOException e) {
+                    cancel(rs);
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long writeCsv(String productName, String salesRegion, LocalDateTime startDate, LocalDateTime endDate,
+                          OutputStream out) throws IOException {
+        CSVPrinter printer = new CSVPrinter(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024),
+                CSVFormat.DEFAULT.withHeader(CSV_HEADERS));
+        long[] rows = {0};
+        stream(productName, salesRegion, startDate, endDate, null, rs -> {
+            printer.printRecord(rs.getString("product_name"), rs.getString("sales_region"),
+                    DATE_TIME_FORMATTER.format(rs.getTimestamp("sales_date").toLocalDateTime()),
+                    rs.getInt("sales_quantity"), rs.getBigDecimal("unit_price"), rs.getBigDecimal("total_amount"),
+                    rs.getLong("id"));
+            rows[0]++;
+        });
+        printer.flush();
+        return rows[0];
+    }
+
+    // EasyExcel 写 xlsx 时使用 SXSSF，已写的行落到临时文件，堆中只保留一个窗口；整个文件在 finish 时才输出，
+    // 写入前客户端断开不会产生 IOException，由行数上限和超时中断限制查询时长
+    private long writeXlsx(String productName, String salesRegion, LocalDateTime startDate, LocalDateTime endDate,
+                           OutputStream out) throws IOException {
+        DiscardableOutputStream target = new DiscardableOutputStream(out);
+        ExcelWriter writer = EasyExcel.write(target, SalesExportDTO.class).autoCloseStream(false).build();
+        List<SalesExportDTO> chunk = new ArrayList<>(XLSX_CHUNK_ROWS);
+        long[] rows = {0};
+        WriteSheet[] sheet = {EasyExcel.writerSheet(0, "销售明细").build()};
+        try {
+            stream(productName, salesRegion, startDate, endDate, null, rs -> {
+                if (rows[0] == xlsxMaxRows) {
+                    cancel(rs);
+                    throw new IllegalStateException("XLSX 导出最多 " + xlsxMaxRows + " 行，请缩小筛选范围或改用 CSV");
+                }
+                chunk.add(toExportRow(rs));
+                rows[0]++;
+                if (chunk.size() == XLSX_CHUNK_ROWS) {
+                    writer.write(chunk, sheet[0]);
+                    chunk.clear();
+                }
+                if (rows[0] % SHEET_ROWS == 0) {
+                    int sheetNo = (int) (rows[0] / SHEET_ROWS);
+                    sheet[0] = EasyExcel.writerSheet(sheetNo, "销售明细" + (sheetNo + 1)).build();
+                }
+            });
+            if (!chunk.isEmpty() || rows[0] == 0) {
+                writer.write(chunk, sheet[0]);
+            }
+        } catch (IOException | RuntimeException e) {
+            // 导出已失败，finish 只用于清理临时文件：不把不完整的文件写给客户端，它的异常也不掩盖原因
+            target.discard();
+            try {
+                writer.finish();
+            } catch (RuntimeException ignored) {
+                // 忽略
+            }
+            throw e;
+        }
+        writer.finish();
+        return rows[0];
+    }
+
+    private static SalesExportDTO toExportRow(ResultSet rs) throws SQLException {
+        SalesExportDTO row = new SalesExportDTO();
+        row.setId(rs.getLong("id"));
+        row.setSalesDate(rs.getTimestamp("sales_date").toLocalDateTime());
+        row.setProductName(rs.getString("product_name"));
+        row.setSalesRegion(rs.getString("sales_region"));
+        row.setSalesQuantity(rs.getInt("sales_quantity"));
+        row.setUnitPrice(rs.getBigDecimal("unit_price"));
+        row.setTotalAmount(rs.getBigDecimal("total_amount"));
+        return row;
+    }
+
+    // 客户端已断开，让服务端停止执行，避免关闭语句时还要把剩余的行读完
+    private static void cancel(ResultSet rs) {
+        try {
+            rs.getStatement().cancel();
+        } catch (SQLException e) {
+            log.debug("取消导出查询失败: {}", e.getMessage());
+        }
+    }
+
+    // 导出失败后丢弃写入，响应尚未提交时仍能返回错误状态
+    private static final class DiscardableOutputStream extends FilterOutputStream {
+        private boolean discarded;
+
+        private DiscardableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        private void discard() {
+            discarded = true;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!discarded) {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!discarded) {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!discarded) {
+                out.flush();
+            }
+        }
+    }
+}
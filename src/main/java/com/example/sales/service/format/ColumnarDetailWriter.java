@@ -0,0 +1,111 @@
+package com.example.sales.service.format;
+
+import com.example.sales.dto.VisualizationData;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 明细的列式输出：每块最多 BLOCK_SIZE 行，按列写成并行的数值数组，不重复输出字段名。
+ * 日期写成相对 startDate 的天数；产品写成编号，编号按首次出现的顺序分配，
+ * 每块的 products 只列出本块新出现的名称，客户端依次追加即得到完整字典，没有产品的行编号为 -1。
+ * 生成器可以是 JSON、CBOR 或 Smile，逐块写出，内存占用与总行数无关。
+ */
+public final class ColumnarDetailWriter {
+
+    public static final int BLOCK_SIZE = 4096;
+
+    private final JsonGenerator generator;
+    private final LocalDate startDate;
+    private final Map<String, Integer> productIds = new HashMap<>();
+    private final List<String> newProducts = new ArrayList<>();
+
+    private final int[] days = new int[BLOCK_SIZE];
+    private final int[] products = new int[BLOCK_SIZE];
+    private final double[] sales = new double[BLOCK_SIZE];
+    private final double[] revenue = new double[BLOCK_SIZE];
+    private final double[] profit = new double[BLOCK_SIZE];
+    private int size;
+    private long rows;
+
+    public ColumnarDetailWriter(JsonGenerator generator, LocalDate startDate) throws IOException {
+        this.generator = generator;
+        this.startDate = startDate;
+        generator.writeStartObject();
+        generator.writeStringField("layout", "columnar");
+        generator.writeStringField("startDate", startDate.toString());
+        generator.writeArrayFieldStart("blocks");
+    }
+
+    public void add(VisualizationData.DetailItem item) throws IOException {
+        days[size] = (int) ChronoUnit.DAYS.between(startDate, LocalDate.parse(item.getDate()));
+        products[size] = productId(item.getProduct());
+        sales[size] = valueOf(item.getSales());
+        revenue[size] = valueOf(item.getRevenue());
+        profit[size] = valueOf(item.getProfit());
+        size++;
+        rows++;
+        if (size == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * 写出剩余行并结束文档，不关闭底层输出流。
+     */
+    public void finish() throws IOException {
+        writeBlock();
+        generator.writeEndArray();
+        generator.writeNumberField("rows", rows);
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private int productId(String product) {
+        if (product == null) {
+            return -1;
+        }
+        Integer id = productIds.get(product);
+        if (id == null) {
+            id = productIds.size();
+            productIds.put(product, id);
+            newProducts.add(product);
+        }
+        return id;
+    }
+
+    private void writeBlock() throws IOException {
+        if (size == 0) {
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("products");
+        for (String product : newProducts) {
+            generator.writeString(product);
+        }
+        generator.writeEndArray();
+        generator.writeFieldName("day");
+        generator.writeArray(days, 0, size);
+        generator.writeFieldName("product");
+        generator.writeArray(products, 0, size);
+        generator.writeFieldName("sales");
+        generator.writeArray(sales, 0, size);
+        generator.writeFieldName("revenue");
+        generator.writeArray(revenue, 0, size);
+        generator.writeFieldName("profit");
+        generator.writeArray(profit, 0, size);
+        generator.writeEndObject();
+        newProducts.clear();
+        size = 0;
+    }
+
+    private static double valueOf(Double value) {
+        return value != null ? value : 0;
+    }
+}
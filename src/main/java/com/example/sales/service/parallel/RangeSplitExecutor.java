@@ -0,0 +1,124 @@
+package com.example.sales.service.parallel;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+/**
+ * 把长日期区间切成按月的分片，在有界线程池上并发查询，再由调用方提供的合并函数汇总部分结果。
+ * 分片耗时超过阈值时后续分片减半（最小一天），明显偏快时逐步恢复到整月。
+ */
+@Slf4j
+@Component
+public class RangeSplitExecutor {
+
+    private static final int MONTH_SLICE_DAYS = 31;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final long slowSliceMillis;
+    private final AtomicInteger sliceDays = new AtomicInteger(MONTH_SLICE_DAYS);
+
+    @Autowired
+    public RangeSplitExecutor(@Qualifier("rangeQueryExecutor") Executor executor,
+                              @Value("${sales.parallel.threads:8}") int parallelism,
+                              @Value("${sales.parallel.slow-slice-ms:2000}") long slowSliceMillis) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.slowSliceMillis = slowSliceMillis;
+    }
+
+    /**
+     * 对 [startDate, endDate]（含首尾）执行分片查询。slice 接收分片的首尾日期（含），
+     * combine 须满足结合律和交换律，分片结果按完成顺序合并。区间不超过一个分片时直接在当前线程执行。
+     */
+    public <A> A execute(LocalDate startDate, LocalDate endDate,
+                         BiFunction<LocalDate, LocalDate, A> slice, BinaryOperator<A> combine) {
+        if (!sliceEnd(startDate, endDate).isBefore(endDate)) {
+            return slice.apply(startDate, endDate);
+        }
+
+        CompletionService<SliceResult<A>> completion = new ExecutorCompletionService<>(executor);
+        List<Future<SliceResult<A>>> futures = new ArrayList<>();
+        LocalDate cursor = startDate;
+        int inFlight = 0;
+        A result = null;
+        try {
+            while (!cursor.isAfter(endDate) || inFlight > 0) {
+                // 同时在途的分片不超过线程数，后续分片使用调整后的大小
+                while (!cursor.isAfter(endDate) && inFlight < parallelism) {
+                    LocalDate from = cursor;
+                    LocalDate to = sliceEnd(from, endDate);
+                    futures.add(completion.submit(() -> {
+                        long begin = System.currentTimeMillis();
+                        A value = slice.apply(from, to);
+                        return new SliceResult<>(value, System.currentTimeMillis() - begin);
+                    }));
+                    cursor = to.plusDays(1);
+                    inFlight++;
+                }
+
+                SliceResult<A> partial = completion.take().get();
+                inFlight--;
+                adapt(partial.elapsedMillis);
+                result = result == null ? partial.value : combine.apply(result, partial.value);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(futures);
+            throw new IllegalStateException("分片查询被中断", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("分片查询失败", cause);
+        }
+    }
+
+    private LocalDate sliceEnd(LocalDate from, LocalDate endDate) {
+        int days = sliceDays.get();
+        LocalDate to = days >= MONTH_SLICE_DAYS
+                ? from.with(TemporalAdjusters.lastDayOfMonth())
+                : from.plusDays(days - 1);
+        return to.isAfter(endDate) ? endDate : to;
+    }
+
+    private void adapt(long elapsedMillis) {
+        if (elapsedMillis > slowSliceMillis) {
+            int days = sliceDays.updateAndGet(current -> Math.max(1, Math.min(current, MONTH_SLICE_DAYS) / 2));
+            log.debug("分片耗时 {} ms，后续分片缩小为 {} 天", elapsedMillis, days);
+        } else if (elapsedMillis < slowSliceMillis / 4) {
+            sliceDays.updateAndGet(current -> Math.min(MONTH_SLICE_DAYS, current * 2));
+        }
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static final class SliceResult<A> {
+        private final A value;
+        private final long elapsedMillis;
+
+        private SliceResult(A value, long elapsedMillis) {
+            this.value = value;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.sales.service.parallel;
+
+import com.example.sales.dto.SingleFlightStatsDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 相同参数的并发请求合并为一次计算。第一个到达的请求在自己的线程上执行，
+ * 计算期间到达的相同请求等待并共享同一个结果（或同一个异常）；计算结束后不保留结果。
+ */
+@Component
+public class SingleFlight {
+
+    private final ConcurrentMap<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * operation 区分不同的查询，params 须是已规范化的参数（默认值已填充），按 equals 比较。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Supplier<T> loader, Object... params) {
+        List<Object> key = new ArrayList<>(params.length + 1);
+        key.add(operation);
+        key.addAll(Arrays.asList(params));
+        Stats counters = stats.computeIfAbsent(operation, name -> new Stats());
+        counters.requests.increment();
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            counters.coalesced.increment();
+            long begin = System.nanoTime();
+            try {
+                return (T) existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待合并请求结果时被中断", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                counters.recordWait(System.nanoTime() - begin);
+            }
+        }
+
+        counters.executions.increment();
+        try {
+            T value = loader.get();
+            // 先移出再唤醒等待者，之后到达的请求重新计算，不会拿到更早开始的结果
+            inFlight.remove(key, future);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public List<SingleFlightStatsDTO> getStats() {
+        List<SingleFlightStatsDTO> result = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats counters = entry.getValue();
+            long requests = counters.requests.sum();
+            long coalesced = counters.coalesced.sum();
+            long waits = counters.waitCount.sum();
+
+            SingleFlightStatsDTO dto = new SingleFlightStatsDTO();
+            dto.setOperation(entry.getKey());
+            dto.setRequests(requests);
+            dto.setExecutions(counters.executions.sum());
+            dto.setCoalesced(coalesced);
+            dto.setCoalescingRatio(requests > 0 ? (double) coalesced / requests : 0.0);
+            dto.setAverageWaitMillis(waits > 0 ? counters.waitNanos.sum() / 1e6 / waits : 0.0);
+            dto.setMaxWaitMillis(counters.maxWaitNanos.get() / 1e6);
+            dto.setInFlight(countInFlight(entry.getKey()));
+            result.add(dto);
+        }
+        result.sort((a, b) -> a.getOperation().compareTo(b.getOperation()));
+        return result;
+    }
+
+    private int countInFlight(String operation) {
+        int count = 0;
+        for (List<Object> key : inFlight.keySet()) {
+            if (operation.equals(key.get(0))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class Stats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder waitCount = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private void recordWait(long nanos) {
+            waitCount.increment();
+            waitNanos.add(nanos);
+            maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
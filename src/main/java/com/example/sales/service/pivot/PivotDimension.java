@@ -0,0 +1,40 @@
+package com.example.sales.service.pivot;
+
+import com.example.sales.service.rollup.RollupLevel;
+
+/**
+ * 透视分组维度。时间维度对应汇总粒度和 sales 表上的生成列。
+ */
+public enum PivotDimension {
+    PRODUCT("s.product_name", "product_name", null),
+    REGION("s.sales_region", "sales_region", null),
+    DAY("s.sales_day", "sales_day", RollupLevel.DAY),
+    WEEK("DATE_SUB(s.sales_day, INTERVAL WEEKDAY(s.sales_day) DAY)", "sales_day", RollupLevel.WEEK),
+    MONTH("s.sales_month", "sales_month", RollupLevel.MONTH);
+
+    private final String expression;
+    private final String column;
+    private final RollupLevel level;
+
+    PivotDimension(String expression, String column, RollupLevel level) {
+        this.expression = expression;
+        this.column = column;
+        this.level = level;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public RollupLevel getLevel() {
+        return level;
+    }
+
+    public boolean isTime() {
+        return level != null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.sales.service.pivot;
+
+import com.example.sales.service.rollup.RollupRow;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 透视度量，可由汇总行或 sales 表聚合得到。
+ */
+public enum PivotMeasure {
+    QUANTITY("SUM(s.sales_quantity)", "sales_quantity"),
+    AMOUNT("SUM(s.total_amount)", "total_amount"),
+    COUNT("COUNT(*)"),
+    PROFIT("SUM(s.total_amount - (s.unit_price * s.sales_quantity * 0.7))", "total_amount", "unit_price", "sales_quantity");
+
+    private final String expression;
+    private final List<String> columns;
+
+    PivotMeasure(String expression, String... columns) {
+        this.expression = expression;
+        this.columns = columns.length == 0 ? Collections.<String>emptyList() : Arrays.asList(columns);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public Object valueOf(RollupRow row) {
+        switch (this) {
+            case QUANTITY:
+                return row.getQuantity();
+            case AMOUNT:
+                return row.getAmount();
+            case COUNT:
+                return row.getOrderCount();
+            default:
+                return row.getProfit();
+        }
+    }
+
+    public Object read(ResultSet rs, int column) throws SQLException {
+        return this == QUANTITY || this == COUNT ? (Object) rs.getLong(column) : rs.getBigDecimal(column);
+    }
+}
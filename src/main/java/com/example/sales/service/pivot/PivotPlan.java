@@ -0,0 +1,63 @@
+package com.example.sales.service.pivot;
+
+import java.util.List;
+
+/**
+ * 透视查询的执行计划：数据来源、预计读取行数，以及所用的汇总产品列表或 sales 表索引。
+ */
+public class PivotPlan {
+
+    public enum Source {
+        MEMORY, ROLLUP, SQL
+    }
+
+    private final Source source;
+    private final long estimatedRows;
+    private final List<String> products;
+    private final PivotPlanner.SalesIndex index;
+    private final boolean covering;
+
+    private PivotPlan(Source source, long estimatedRows, List<String> products,
+                      PivotPlanner.SalesIndex index, boolean covering) {
+        this.source = source;
+        this.estimatedRows = estimatedRows;
+        this.products = products;
+        this.index = index;
+        this.covering = covering;
+    }
+
+    public static PivotPlan rollup(long estimatedRows, List<String> products) {
+        return new PivotPlan(Source.ROLLUP, estimatedRows, products, null, false);
+    }
+
+    public static PivotPlan sql(long estimatedRows, PivotPlanner.SalesIndex index, boolean covering) {
+        return new PivotPlan(Source.SQL, estimatedRows, null, index, covering);
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public List<String> getProducts() {
+        return products;
+    }
+
+    public PivotPlanner.SalesIndex getIndex() {
+        return index;
+    }
+
+    public boolean isCovering() {
+        return covering;
+    }
+
+    @Override
+    public String toString() {
+        return source == Source.SQL
+                ? source + "(" + index.getName() + (covering ? ", covering" : "") + ", ~" + estimatedRows + " rows)"
+                : source + "(~" + estimatedRows + " rows)";
+    }
+}
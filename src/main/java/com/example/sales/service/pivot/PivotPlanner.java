@@ -0,0 +1,132 @@
+package com.example.sales.service.pivot;
+
+import com.example.sales.service.rollup.RollupPlanner;
+import com.example.sales.service.rollup.RollupSegment;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按预计读取行数在汇总表和 sales 表之间选择数据来源。
+ * 汇总表按分段计划中每个桶的键数估算；sales 表按区间内订单数估算，索引不覆盖时计入回表代价。
+ */
+public final class PivotPlanner {
+
+    // 产品包含匹配解析出的名称超过该数量时不再展开成 IN 列表
+    public static final int MAX_PRODUCT_LIST = 500;
+    // 非覆盖索引每行回表的相对代价
+    private static final int LOOKUP_COST = 4;
+
+    /**
+     * sales 表上可用于透视的覆盖索引，leadingColumn 为区间谓词所在列。
+     */
+    public enum SalesIndex {
+        SALES_MONTH_REGION("idx_sales_month_region_cover", "sales_month",
+                "sales_month", "sales_region", "total_amount", "sales_quantity"),
+        SALES_DAY_PRODUCT("idx_sales_day_product_cover", "sales_day",
+                "sales_day", "product_name", "sales_quantity", "total_amount", "unit_price"),
+        SALES_DATE_REGION("idx_sales_date_region_cover", "sales_date",
+                "sales_date", "sales_region", "total_amount", "sales_quantity"),
+        SALES_DATE_PRODUCT("idx_sales_date_product_cover", "sales_date",
+                "sales_date", "product_name", "sales_quantity", "total_amount");
+
+        private final String name;
+        private final String leadingColumn;
+        private final Set<String> columns;
+
+        SalesIndex(String name, String leadingColumn, String... columns) {
+            this.name = name;
+            this.leadingColumn = leadingColumn;
+            this.columns = new HashSet<>(Arrays.asList(columns));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getLeadingColumn() {
+            return leadingColumn;
+        }
+    }
+
+    private PivotPlanner() {
+    }
+
+    /**
+     * @param orders   区间内订单数
+     * @param keys     汇总明细中的产品×区域组合数
+     * @param products 产品包含匹配解析出的名称，无产品过滤时为 null
+     */
+    public static PivotPlan plan(PivotQuery query, long orders, long keys, List<String> products) {
+        LocalDateTime start = query.getStartDate().atStartOfDay();
+        LocalDateTime end = query.getEndDate().plusDays(1).atStartOfDay();
+
+        long rollupRows = Long.MAX_VALUE;
+        if (products == null || products.size() <= MAX_PRODUCT_LIST) {
+            PivotDimension time = query.getTimeDimension();
+            List<RollupSegment> segments = RollupPlanner.plan(start, end, time != null ? time.getLevel() : null);
+            rollupRows = estimateRollupRows(segments, start, end, orders, query.needsDetail() ? keys : 1);
+        }
+
+        SalesIndex index = chooseIndex(query);
+        boolean covering = index.columns.containsAll(requiredColumns(query));
+        long sqlRows = covering ? orders : orders * LOOKUP_COST;
+
+        return rollupRows <= sqlRows ? PivotPlan.rollup(rollupRows, products) : PivotPlan.sql(sqlRows, index, covering);
+    }
+
+    // 每段按订单在时间上均匀分布估算单桶订单数，单桶读取行数不超过键数也不超过订单数
+    static long estimateRollupRows(List<RollupSegment> segments, LocalDateTime start, LocalDateTime end,
+                                   long orders, long keys) {
+        double rangeHours = Math.max(1, Duration.between(start, end).toHours());
+        long rows = 0;
+        for (RollupSegment segment : segments) {
+            long buckets = 0;
+            for (LocalDateTime bucket = segment.getFrom(); bucket.isBefore(segment.getTo());
+                 bucket = segment.getLevel().next(bucket)) {
+                buckets++;
+            }
+            double segmentOrders = orders * Duration.between(segment.getFrom(), segment.getTo()).toHours() / rangeHours;
+            rows += (long) Math.ceil(buckets * Math.min(keys, Math.max(1, segmentOrders / buckets)));
+        }
+        return rows;
+    }
+
+    static SalesIndex chooseIndex(PivotQuery query) {
+        Set<String> required = requiredColumns(query);
+        boolean monthAligned = query.getStartDate().getDayOfMonth() == 1
+                && query.getEndDate().plusDays(1).getDayOfMonth() == 1;
+        for (SalesIndex index : SalesIndex.values()) {
+            if (index == SalesIndex.SALES_MONTH_REGION && !monthAligned) {
+                continue;
+            }
+            if (index.columns.containsAll(required)) {
+                return index;
+            }
+        }
+        // 没有覆盖索引时按天生成列做区间扫描
+        return SalesIndex.SALES_DAY_PRODUCT;
+    }
+
+    private static Set<String> requiredColumns(PivotQuery query) {
+        Set<String> columns = new LinkedHashSet<>();
+        for (PivotDimension dimension : query.getDimensions()) {
+            columns.add(dimension.getColumn());
+        }
+        for (PivotMeasure measure : query.getMeasures()) {
+            columns.addAll(measure.getColumns());
+        }
+        if (query.getProductName() != null) {
+            columns.add("product_name");
+        }
+        if (query.getSalesRegion() != null) {
+            columns.add("sales_region");
+        }
+        return columns;
+    }
+}
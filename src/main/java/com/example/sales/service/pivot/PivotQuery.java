@@ -0,0 +1,86 @@
+package com.example.sales.service.pivot;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * 规范化后的透视查询：[startDate, endDate] 含首尾两天，productName 为包含匹配，salesRegion 为精确匹配。
+ */
+public class PivotQuery {
+
+    private final List<PivotDimension> dimensions;
+    private final List<PivotMeasure> measures;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final String productName;
+    private final String salesRegion;
+
+    public PivotQuery(List<PivotDimension> dimensions, List<PivotMeasure> measures,
+                      LocalDate startDate, LocalDate endDate, String productName, String salesRegion) {
+        this.dimensions = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(dimensions)));
+        this.measures = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(measures)));
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.productName = productName == null || productName.isEmpty() ? null : productName;
+        this.salesRegion = salesRegion == null || salesRegion.isEmpty() ? null : salesRegion;
+
+        if (this.measures.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个度量");
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
+        }
+        int timeDimensions = 0;
+        for (PivotDimension dimension : this.dimensions) {
+            timeDimensions += dimension.isTime() ? 1 : 0;
+        }
+        if (timeDimensions > 1) {
+            throw new IllegalArgumentException("最多只能有一个时间维度");
+        }
+    }
+
+    public List<PivotDimension> getDimensions() {
+        return dimensions;
+    }
+
+    public List<PivotMeasure> getMeasures() {
+        return measures;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getSalesRegion() {
+        return salesRegion;
+    }
+
+    public PivotDimension getTimeDimension() {
+        for (PivotDimension dimension : dimensions) {
+            if (dimension.isTime()) {
+                return dimension;
+            }
+        }
+        return null;
+    }
+
+    public boolean needsDetail() {
+        return dimensions.contains(PivotDimension.PRODUCT) || dimensions.contains(PivotDimension.REGION)
+                || productName != null || salesRegion != null;
+    }
+
+    public String cacheKey() {
+        return dimensions + "|" + measures + "|" + startDate + "|" + endDate + "|" + productName + "|" + salesRegion;
+    }
+}
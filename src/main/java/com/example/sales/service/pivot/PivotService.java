@@ -0,0 +1,264 @@
+package com.example.sales.service.pivot;
+
+import com.example.sales.dto.PivotResultDTO;
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.event.SalesRollupRebuiltEvent;
+import com.example.sales.service.parallel.SingleFlight;
+import com.example.sales.service.rollup.RollupRow;
+import com.example.sales.service.rollup.SalesRollupService;
+import com.example.sales.service.search.ProductNameIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * 通用透视查询。依次尝试内存中的近期结果、汇总表和 sales 表，
+ * 汇总表与 sales 表之间由 {@link PivotPlanner} 按预计读取行数选择。
+ */
+@Service
+public class PivotService {
+
+    private static final int MAX_CACHED_RESULTS = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SalesRollupService salesRollupService;
+    private final ProductNameIndex productNameIndex;
+    private final SingleFlight singleFlight;
+    private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long version;
+
+    @Autowired
+    public PivotService(JdbcTemplate jdbcTemplate, SalesRollupService salesRollupService,
+                        ProductNameIndex productNameIndex, SingleFlight singleFlight) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.salesRollupService = salesRollupService;
+        this.productNameIndex = productNameIndex;
+        this.singleFlight = singleFlight;
+    }
+
+    public PivotResultDTO pivot(PivotQuery query) {
+        String key = query.cacheKey();
+        long startVersion;
+        synchronized (this) {
+            CachedResult cached = results.get(key);
+            if (cached != null) {
+                PivotResultDTO result = cached.result;
+                return new PivotResultDTO(PivotPlan.Source.MEMORY.name(), result.getRowCount(),
+                        result.getColumns(), result.getData());
+            }
+            startVersion = version;
+        }
+
+        // 缓存未命中时，相同的并发查询只计算一次；版本号参与合并，写入之后开始的查询不共享写入之前的结果
+        PivotResultDTO result = singleFlight.execute("pivot", () -> compute(query), key, startVersion);
+
+        synchronized (this) {
+            // 计算期间有写入时结果可能已过期，不放入缓存
+            if (version == startVersion) {
+                results.put(key, new CachedResult(query, result));
+                if (results.size() > MAX_CACHED_RESULTS) {
+                    Iterator<String> eldest = results.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        return result;
+    }
+
+    private PivotResultDTO compute(PivotQuery query) {
+        List<String> products = query.getProductName() != null
+                ? productNameIndex.resolve(query.getProductName()) : null;
+        List<RollupRow> totals = salesRollupService.query(query.getStartDate().atStartOfDay(),
+                query.getEndDate().plusDays(1).atStartOfDay(), null, false, false);
+        long orders = totals.isEmpty() ? 0 : totals.get(0).getOrderCount();
+        long keys = query.needsDetail() ? salesRollupService.countDimensionKeys() : 1;
+        PivotPlan plan = PivotPlanner.plan(query, orders, keys, products);
+
+        List<Object[]> rows = plan.getSource() == PivotPlan.Source.ROLLUP ? fromRollup(query, plan)
+                : products != null && products.isEmpty() ? new ArrayList<>()
+                : fromSales(query, plan, products);
+        return toColumns(query, rows, plan.toString());
+    }
+
+    // 写入发布时和提交后各失效一次，覆盖事务进行中开始的查询
+    @EventListener
+    public void onSalesChanged(SalesChangedEvent event) {
+        invalidate(event.getChanges());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void afterSalesCommitted(SalesChangedEvent event) {
+        invalidate(event.getChanges());
+    }
+
+    @EventListener
+    public synchronized void onRollupRebuilt(SalesRollupRebuiltEvent event) {
+        version++;
+        results.clear();
+    }
+
+    private synchronized void invalidate(List<SalesChange> changes) {
+        version++;
+        Set<LocalDate> days = new HashSet<>();
+        for (SalesChange change : changes) {
+            days.add(change.getSalesDate().toLocalDate());
+        }
+        Iterator<CachedResult> iterator = results.values().iterator();
+        while (iterator.hasNext()) {
+            PivotQuery cached = iterator.next().query;
+            for (LocalDate day : days) {
+                if (!day.isBefore(cached.getStartDate()) && !day.isAfter(cached.getEndDate())) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    private List<Object[]> fromRollup(PivotQuery query, PivotPlan plan) {
+        PivotDimension time = query.getTimeDimension();
+        List<RollupRow> rollupRows = salesRollupService.query(query.getStartDate().atStartOfDay(),
+                query.getEndDate().plusDays(1).atStartOfDay(), time != null ? time.getLevel() : null,
+                query.getDimensions().contains(PivotDimension.PRODUCT),
+                query.getDimensions().contains(PivotDimension.REGION),
+                plan.getProducts(), query.getSalesRegion());
+
+        List<PivotDimension> dimensions = query.getDimensions();
+        List<PivotMeasure> measures = query.getMeasures();
+        List<Object[]> rows = new ArrayList<>(rollupRows.size());
+        for (RollupRow rollupRow : rollupRows) {
+            Object[] row = new Object[dimensions.size() + measures.size()];
+            for (int i = 0; i < dimensions.size(); i++) {
+                PivotDimension dimension = dimensions.get(i);
+                row[i] = dimension == PivotDimension.PRODUCT ? rollupRow.getProductName()
+                        : dimension == PivotDimension.REGION ? rollupRow.getSalesRegion()
+                        : rollupRow.getBucketStart().toLocalDate().toString();
+            }
+            for (int i = 0; i < measures.size(); i++) {
+                row[dimensions.size() + i] = measures.get(i).valueOf(rollupRow);
+            }
+            rows.add(row);
+        }
+        rows.sort(byDimensions(dimensions.size()));
+        return rows;
+    }
+
+    private List<Object[]> fromSales(PivotQuery query, PivotPlan plan, List<String> products) {
+        List<PivotDimension> dimensions = query.getDimensions();
+        List<PivotMeasure> measures = query.getMeasures();
+        StringJoiner select = new StringJoiner(", ", "SELECT ", "");
+        StringJoiner group = new StringJoiner(", ");
+        for (PivotDimension dimension : dimensions) {
+            select.add(dimension.getExpression());
+            group.add(dimension.getExpression());
+        }
+        for (PivotMeasure measure : measures) {
+            select.add(measure.getExpression());
+        }
+
+        StringBuilder sql = new StringBuilder(select.toString()).append(" FROM sales s WHERE ");
+        List<Object> args = new ArrayList<>();
+        // 区间谓词写在所选索引的首列上
+        switch (plan.getIndex().getLeadingColumn()) {
+            case "sales_month":
+                sql.append("s.sales_month BETWEEN ? AND ?");
+                args.add(Date.valueOf(query.getStartDate()));
+                args.add(Date.valueOf(query.getEndDate().withDayOfMonth(1)));
+                break;
+            case "sales_day":
+                sql.append("s.sales_day BETWEEN ? AND ?");
+                args.add(Date.valueOf(query.getStartDate()));
+                args.add(Date.valueOf(query.getEndDate()));
+                break;
+            default:
+                sql.append("s.sales_date >= ? AND s.sales_date < ?");
+                args.add(Timestamp.valueOf(query.getStartDate().atStartOfDay()));
+                args.add(Timestamp.valueOf(query.getEndDate().plusDays(1).atStartOfDay()));
+                break;
+        }
+        // 匹配的产品过多时关键字本身区分度很低，仍用 LIKE
+        if (products != null && products.size() > PivotPlanner.MAX_PRODUCT_LIST) {
+            sql.append(" AND s.product_name LIKE CONCAT('%', ?, '%')");
+            args.add(query.getProductName());
+        } else if (products != null) {
+            StringJoiner in = new StringJoiner(", ", " AND s.product_name IN (", ")");
+            for (String product : products) {
+                in.add("?");
+                args.add(product);
+            }
+            sql.append(in);
+        }
+        if (query.getSalesRegion() != null) {
+            sql.append(" AND s.sales_region = ?");
+            args.add(query.getSalesRegion());
+        }
+        if (!dimensions.isEmpty()) {
+            sql.append(" GROUP BY ").append(group).append(" ORDER BY ").append(group);
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            Object[] row = new Object[dimensions.size() + measures.size()];
+            for (int i = 0; i < dimensions.size(); i++) {
+                row[i] = dimensions.get(i).isTime() ? rs.getDate(i + 1).toLocalDate().toString() : rs.getString(i + 1);
+            }
+            for (int i = 0; i < measures.size(); i++) {
+                row[dimensions.size() + i] = measures.get(i).read(rs, dimensions.size() + i + 1);
+            }
+            rows.add(row);
+        }, args.toArray());
+        return rows;
+    }
+
+    private PivotResultDTO toColumns(PivotQuery query, List<Object[]> rows, String plan) {
+        List<String> columns = new ArrayList<>();
+        for (PivotDimension dimension : query.getDimensions()) {
+            columns.add(dimension.name().toLowerCase(Locale.ROOT));
+        }
+        for (PivotMeasure measure : query.getMeasures()) {
+            columns.add(measure.name().toLowerCase(Locale.ROOT));
+        }
+
+        List<List<Object>> data = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            List<Object> column = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                column.add(row[i]);
+            }
+            data.add(column);
+        }
+        return new PivotResultDTO(plan, rows.size(), columns, data);
+    }
+
+    private static Comparator<Object[]> byDimensions(int dimensionCount) {
+        return (a, b) -> {
+            for (int i = 0; i < dimensionCount; i++) {
+                int cmp = String.valueOf(a[i]).compareTo(String.valueOf(b[i]));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static final class CachedResult {
+        private final PivotQuery query;
+        private final PivotResultDTO result;
+
+        private CachedResult(PivotQuery query, PivotResultDTO result) {
+            this.query = query;
+            this.result = result;
+        }
+    }
+}
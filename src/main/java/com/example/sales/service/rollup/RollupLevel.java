@@ -0,0 +1,91 @@
+package com.example.sales.service.rollup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * 汇总粒度。粗粒度由细粒度推导：DAY←HOUR，WEEK←DAY，MONTH←DAY，YEAR←MONTH。
+ */
+public enum RollupLevel {
+    HOUR,
+    DAY,
+    WEEK,
+    MONTH,
+    YEAR;
+
+    public LocalDateTime truncate(LocalDateTime time) {
+        switch (this) {
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            case DAY:
+                return time.truncatedTo(ChronoUnit.DAYS);
+            case WEEK:
+                return time.truncatedTo(ChronoUnit.DAYS)
+                        .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            case YEAR:
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1);
+            default:
+                throw new IllegalStateException("未知汇总粒度: " + this);
+        }
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        switch (this) {
+            case HOUR:
+                return bucketStart.plusHours(1);
+            case DAY:
+                return bucketStart.plusDays(1);
+            case WEEK:
+                return bucketStart.plusWeeks(1);
+            case MONTH:
+                return bucketStart.plusMonths(1);
+            case YEAR:
+                return bucketStart.plusYears(1);
+            default:
+                throw new IllegalStateException("未知汇总粒度: " + this);
+        }
+    }
+
+    public boolean isAligned(LocalDateTime time) {
+        return truncate(time).equals(time);
+    }
+
+    /**
+     * 推导本粒度所用的更细粒度，HOUR 为最细粒度返回 null。
+     */
+    public RollupLevel source() {
+        switch (this) {
+            case DAY:
+                return HOUR;
+            case WEEK:
+            case MONTH:
+                return DAY;
+            case YEAR:
+                return MONTH;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 本粒度的桶是否一定完整落在 outer 粒度的某个桶内；outer 为 null 表示不分桶。
+     */
+    public boolean nestsIn(RollupLevel outer) {
+        if (outer == null || this == outer || this == HOUR) {
+            return true;
+        }
+        switch (outer) {
+            case WEEK:
+            case MONTH:
+                return this == DAY;
+            case YEAR:
+                return this == DAY || this == MONTH;
+            default:
+                return false;
+        }
+    }
+}
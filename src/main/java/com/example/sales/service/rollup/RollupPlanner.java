@@ -0,0 +1,60 @@
+package com.example.sales.service.rollup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用能精确覆盖区间的最粗粒度组合来回答按时间分桶的查询，
+ * 例如整月部分读 MONTH，首尾不足一月的部分读 DAY，再不足一天的部分读 HOUR。
+ */
+public final class RollupPlanner {
+
+    private static final RollupLevel[] COARSE_TO_FINE = {
+            RollupLevel.YEAR, RollupLevel.MONTH, RollupLevel.WEEK, RollupLevel.DAY, RollupLevel.HOUR
+    };
+
+    private RollupPlanner() {
+    }
+
+    /**
+     * @param start       起始时间（含），向下取整到小时
+     * @param end         结束时间（不含），向上取整到小时
+     * @param granularity 结果分桶粒度，为 null 时只求区间合计
+     */
+    public static List<RollupSegment> plan(LocalDateTime start, LocalDateTime end, RollupLevel granularity) {
+        List<RollupLevel> candidates = new ArrayList<>();
+        for (RollupLevel level : COARSE_TO_FINE) {
+            if (level.nestsIn(granularity)) {
+                candidates.add(level);
+            }
+        }
+
+        LocalDateTime cursor = RollupLevel.HOUR.truncate(start);
+        LocalDateTime limit = RollupLevel.HOUR.isAligned(end) ? end : RollupLevel.HOUR.next(RollupLevel.HOUR.truncate(end));
+
+        List<RollupSegment> segments = new ArrayList<>();
+        RollupLevel currentLevel = null;
+        LocalDateTime segmentStart = null;
+        while (cursor.isBefore(limit)) {
+            for (RollupLevel level : candidates) {
+                LocalDateTime next = level.next(cursor);
+                if (level.isAligned(cursor) && !next.isAfter(limit)) {
+                    if (level != currentLevel) {
+                        if (currentLevel != null) {
+                            segments.add(new RollupSegment(currentLevel, segmentStart, cursor));
+                        }
+                        currentLevel = level;
+                        segmentStart = cursor;
+                    }
+                    cursor = next;
+                    break;
+                }
+            }
+        }
+        if (currentLevel != null) {
+            segments.add(new RollupSegment(currentLevel, segmentStart, cursor));
+        }
+        return segments;
+    }
+}
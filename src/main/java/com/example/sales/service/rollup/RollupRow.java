@@ -0,0 +1,59 @@
+package com.example.sales.service.rollup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 汇总查询结果行，维度未参与分组时对应字段为 null。
+ */
+public class RollupRow {
+
+    private final LocalDateTime bucketStart;
+    private final String productName;
+    private final String salesRegion;
+    private long quantity;
+    private BigDecimal amount = BigDecimal.ZERO;
+    private BigDecimal profit = BigDecimal.ZERO;
+    private long orderCount;
+
+    public RollupRow(LocalDateTime bucketStart, String productName, String salesRegion) {
+        this.bucketStart = bucketStart;
+        this.productName = productName;
+        this.salesRegion = salesRegion;
+    }
+
+    public void add(long quantity, BigDecimal amount, BigDecimal profit, long orderCount) {
+        this.quantity += quantity;
+        this.amount = this.amount.add(amount);
+        this.profit = this.profit.add(profit);
+        this.orderCount += orderCount;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getSalesRegion() {
+        return salesRegion;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public BigDecimal getProfit() {
+        return profit;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.sales.service.rollup;
+
+import java.time.LocalDateTime;
+
+/**
+ * 查询计划中的一段：某一粒度下 [from, to) 内的连续桶。
+ */
+public class RollupSegment {
+
+    private final RollupLevel level;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    public RollupSegment(RollupLevel level, LocalDateTime from, LocalDateTime to) {
+        this.level = level;
+        this.from = from;
+        this.to = to;
+    }
+
+    public RollupLevel getLevel() {
+        return level;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return level + "[" + from + ", " + to + ")";
+    }
+}
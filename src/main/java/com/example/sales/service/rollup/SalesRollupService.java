@@ -0,0 +1,528 @@
+package com.example.sales.service.rollup;
+
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.event.SalesRollupRebuiltEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 分层时间汇总存储。写入时先按小时累计增量，再逐级推导出日/周/月/年增量，
+ * 查询时由 {@link RollupPlanner} 选择能精确覆盖区间的最粗粒度组合。
+ * 合计行（product_name 为空串）分成 TOTAL_STRIPES 个分片，sales_region 存分片号，查询时各分片相加。
+ * 对账按时间窗逐段进行：启动时和之后定期检查一个窗口，依次向前扫过全部历史；
+ * 不一致（提交失败、绕过服务直接改表等）的窗口在各自的事务中按与 sales 表的差额修正，不整表重建。
+ */
+@Slf4j
+@Service
+public class SalesRollupService {
+
+    // 合计行的产品取值
+    public static final String ALL = "";
+
+    // 每个写事务随机选一个合计分片累加，并发写入不再全部排队在同一组合计行上
+    private static final int TOTAL_STRIPES = 8;
+
+    private static final RollupLevel[] DERIVED_LEVELS = {
+            RollupLevel.DAY, RollupLevel.WEEK, RollupLevel.MONTH, RollupLevel.YEAR
+    };
+
+    // 所有写事务按同一顺序加锁：粒度、桶、产品、区域
+    private static final Comparator<Object[]> LOCK_ORDER = Comparator
+            .comparing((Object[] args) -> RollupLevel.valueOf((String) args[0]))
+            .thenComparing(args -> (Timestamp) args[1])
+            .thenComparing(args -> (String) args[2])
+            .thenComparing(args -> (String) args[3]);
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO sales_rollup (granularity, bucket_start, product_name, sales_region, " +
+        "quantity, amount, profit, order_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), amount = amount + VALUES(amount), " +
+        "profit = profit + VALUES(profit), order_count = order_count + VALUES(order_count)";
+
+    // 只删除明细行；合计分片可能单独为 0 或负数，各分片之和才有意义
+    private static final String DELETE_EMPTY_SQL =
+        "DELETE FROM sales_rollup WHERE granularity = ? AND bucket_start = ? " +
+        "AND product_name = ? AND sales_region = ? AND order_count <= 0";
+
+    // 明细行为空时即删除，首末明细行就是有数据的范围
+    private static final String BOUNDS_SQL =
+        "SELECT MIN(r.bucket_start) AS min_bucket, MAX(r.bucket_start) AS max_bucket " +
+        "FROM sales_rollup r WHERE r.granularity = 'HOUR' AND r.product_name <> ''";
+
+    private static final String SALES_BOUNDS_SQL =
+        "SELECT MIN(s.sales_day) AS min_day, MAX(s.sales_day) AS max_day FROM sales s";
+
+    // 窗口内 sales 表与日汇总明细行按 (日期, 产品, 区域) 相减，订单数、数量或金额不为 0 的即为不一致；
+    // 单条语句在同一个一致性快照中读取两张表，不加锁，不会因对账期间的写入误报
+    private static final String DRIFT_SQL =
+        "SELECT COUNT(*) FROM (" +
+        "SELECT d.bucket_start FROM (" +
+        "SELECT s.sales_day AS bucket_start, s.product_name, s.sales_region, COUNT(*) AS order_count, " +
+        "SUM(s.sales_quantity) AS quantity, SUM(s.total_amount) AS amount " +
+        "FROM sales s WHERE s.sales_day >= ? AND s.sales_day < ? " +
+        "GROUP BY s.sales_day, s.product_name, s.sales_region " +
+        "UNION ALL " +
+        "SELECT r.bucket_start, r.product_name, r.sales_region, -r.order_count, -r.quantity, -r.amount " +
+        "FROM sales_rollup r WHERE r.granularity = 'DAY' AND r.bucket_start >= ? AND r.bucket_start < ? " +
+        "AND r.product_name <> ''" +
+        ") d GROUP BY d.bucket_start, d.product_name, d.sales_region " +
+        "HAVING SUM(d.order_count) <> 0 OR SUM(d.quantity) <> 0 OR SUM(d.amount) <> 0" +
+        ") drift";
+
+    // 修正时锁住窗口内的 sales 行，期间落在窗口内的写入等待修正提交，窗口外的写入不受影响
+    private static final String REPAIR_SALES_SQL =
+        "SELECT DATE_ADD(s.sales_day, INTERVAL HOUR(s.sales_date) HOUR) AS bucket_start, " +
+        "s.product_name, s.sales_region, SUM(s.sales_quantity) AS quantity, SUM(s.total_amount) AS amount, " +
+        "SUM(s.total_amount - (s.unit_price * s.sales_quantity * 0.7)) AS profit, COUNT(*) AS order_count " +
+        "FROM sales s WHERE s.sales_date >= ? AND s.sales_date < ? " +
+        "GROUP BY DATE_ADD(s.sales_day, INTERVAL HOUR(s.sales_date) HOUR), s.product_name, s.sales_region " +
+        "FOR SHARE";
+
+    private static final String REPAIR_ROLLUP_SQL =
+        "SELECT r.bucket_start, r.product_name, r.sales_region, r.quantity, r.amount, r.profit, r.order_count " +
+        "FROM sales_rollup r WHERE r.granularity = 'HOUR' AND r.bucket_start >= ? AND r.bucket_start < ? " +
+        "AND r.product_name <> '' FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final long reconcileMinutes;
+    private final int sliceDays;
+
+    // 定期对账的下一个窗口的结束日期（不含），只由调度任务访问；为 null 时从最新数据开始
+    private LocalDate reconcileCursor;
+
+    @Autowired
+    public SalesRollupService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              @Qualifier("analyticsRefreshScheduler") ThreadPoolTaskScheduler scheduler,
+                              @Value("${sales.rollup.reconcile-minutes:60}") long reconcileMinutes,
+                              @Value("${sales.rollup.slice-days:7}") int sliceDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.scheduler = scheduler;
+        this.reconcileMinutes = reconcileMinutes;
+        this.sliceDays = sliceDays;
+    }
+
+    @EventListener
+    public void onSalesChanged(SalesChangedEvent event) {
+        apply(event.getChanges());
+    }
+
+    public void apply(List<SalesChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Map<BucketKey, RollupRow> hourly = new HashMap<>();
+        boolean hasRemoval = false;
+        for (SalesChange change : changes) {
+            BucketKey key = new BucketKey(RollupLevel.HOUR.truncate(change.getSalesDate()),
+                    change.getProductName(), change.getSalesRegion());
+            hourly.computeIfAbsent(key, k -> new RollupRow(k.bucketStart, k.productName, k.salesRegion))
+                    .add(change.getQuantity(), change.getTotalAmount(), change.getProfit(), change.getOrderCount());
+            hasRemoval |= change.isRemoval();
+        }
+        applyHourly(hourly, hasRemoval);
+    }
+
+    // 由小时增量逐级推导并写入各粒度的明细行和合计分片
+    private void applyHourly(Map<BucketKey, RollupRow> hourly, boolean hasRemoval) {
+        Map<RollupLevel, Map<BucketKey, RollupRow>> deltas = new EnumMap<>(RollupLevel.class);
+        deltas.put(RollupLevel.HOUR, hourly);
+
+        // 粗粒度增量由其细粒度增量推导
+        for (RollupLevel level : DERIVED_LEVELS) {
+            deltas.put(level, rollUp(deltas.get(level.source()), level));
+        }
+
+        String stripe = String.valueOf(ThreadLocalRandom.current().nextInt(TOTAL_STRIPES));
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> keys = new ArrayList<>();
+        for (Map.Entry<RollupLevel, Map<BucketKey, RollupRow>> entry : deltas.entrySet()) {
+            Map<LocalDateTime, RollupRow> totals = new HashMap<>();
+            for (RollupRow row : entry.getValue().values()) {
+                Object[] args = toArgs(entry.getKey(), row, row.getProductName(), row.getSalesRegion());
+                upserts.add(args);
+                keys.add(Arrays.copyOf(args, 4));
+                totals.computeIfAbsent(row.getBucketStart(), bucket -> new RollupRow(bucket, ALL, stripe))
+                        .add(row.getQuantity(), row.getAmount(), row.getProfit(), row.getOrderCount());
+            }
+            for (RollupRow total : totals.values()) {
+                upserts.add(toArgs(entry.getKey(), total, ALL, stripe));
+            }
+        }
+        // 重叠的批次按相同顺序锁定汇总行，不会互相死锁
+        upserts.sort(LOCK_ORDER);
+        jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+
+        if (hasRemoval) {
+            keys.sort(LOCK_ORDER);
+            jdbcTemplate.batchUpdate(DELETE_EMPTY_SQL, keys);
+        }
+    }
+
+    /**
+     * 查询 [start, end) 内按 granularity 分桶的汇总，granularity 为 null 时返回整段合计。
+     */
+    @Transactional(readOnly = true)
+    public List<RollupRow> query(LocalDateTime start, LocalDateTime end, RollupLevel granularity,
+                                 boolean byProduct, boolean byRegion) {
+        return query(start, end, granularity, byProduct, byRegion, null, null);
+    }
+
+    /**
+     * 同上，可限定产品集合和区域（null 表示不限）。
+     */
+    @Transactional(readOnly = true)
+    public List<RollupRow> query(LocalDateTime start, LocalDateTime end, RollupLevel granularity,
+                                 boolean byProduct, boolean byRegion,
+                                 Collection<String> products, String region) {
+        if (products != null && products.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<RollupSegment> segments = RollupPlanner.plan(start, end, granularity);
+        Map<BucketKey, RollupRow> result = new LinkedHashMap<>();
+        boolean detail = byProduct || byRegion || products != null || region != null;
+        scan(Collections.singletonList(segments), detail, products, region, (period, bucket, rs) -> {
+            BucketKey key = new BucketKey(
+                    granularity != null ? granularity.truncate(bucket) : null,
+                    byProduct ? rs.getString("product_name") : null,
+                    byRegion ? rs.getString("sales_region") : null);
+            result.computeIfAbsent(key, k -> new RollupRow(k.bucketStart, k.productName, k.salesRegion))
+                    .add(rs.getLong("quantity"), rs.getBigDecimal("amount"),
+                            rs.getBigDecimal("profit"), rs.getLong("order_count"));
+        });
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * 一次扫描汇总多个区间 [from, to)，返回与 ranges 一一对应的整段合计。
+     * 区间可以重叠，重叠部分的汇总行同时计入各自区间。
+     */
+    @Transactional(readOnly = true)
+    public List<List<RollupRow>> queryPeriods(List<LocalDateTime[]> ranges, boolean byProduct, boolean byRegion) {
+        List<List<RollupSegment>> plans = new ArrayList<>(ranges.size());
+        List<Map<BucketKey, RollupRow>> results = new ArrayList<>(ranges.size());
+        for (LocalDateTime[] range : ranges) {
+            plans.add(RollupPlanner.plan(range[0], range[1], null));
+            results.add(new LinkedHashMap<>());
+        }
+        scan(plans, byProduct || byRegion, null, null, (period, bucket, rs) -> {
+            BucketKey key = new BucketKey(null,
+                    byProduct ? rs.getString("product_name") : null,
+                    byRegion ? rs.getString("sales_region") : null);
+            results.get(period).computeIfAbsent(key, k -> new RollupRow(null, k.productName, k.salesRegion))
+                    .add(rs.getLong("quantity"), rs.getBigDecimal("amount"),
+                            rs.getBigDecimal("profit"), rs.getLong("order_count"));
+        });
+
+        List<List<RollupRow>> rows = new ArrayList<>(results.size());
+        for (Map<BucketKey, RollupRow> result : results) {
+            rows.add(new ArrayList<>(result.values()));
+        }
+        return rows;
+    }
+
+    /**
+     * 查询全部历史数据的汇总。
+     */
+    @Transactional(readOnly = true)
+    public List<RollupRow> queryAllTime(RollupLevel granularity, boolean byProduct, boolean byRegion) {
+        LocalDateTime[] bounds = dataBounds();
+        if (bounds == null) {
+            return new ArrayList<>();
+        }
+        return query(bounds[0], bounds[1], granularity, byProduct, byRegion);
+    }
+
+    /**
+     * 有数据的时间范围 [首个小时, 末个小时的下一小时)，无数据时返回 null。
+     */
+    @Transactional(readOnly = true)
+    public LocalDateTime[] dataBounds() {
+        Timestamp[] bounds = jdbcTemplate.queryForObject(BOUNDS_SQL, (rs, rowNum) -> new Timestamp[] {
+                rs.getTimestamp("min_bucket"), rs.getTimestamp("max_bucket")
+        });
+        if (bounds == null || bounds[0] == null || bounds[1] == null) {
+            return null;
+        }
+        return new LocalDateTime[] {
+                bounds[0].toLocalDateTime(), RollupLevel.HOUR.next(bounds[1].toLocalDateTime())
+        };
+    }
+
+    /**
+     * 明细汇总中出现过的产品×区域组合数，用于估算汇总查询的读取行数。
+     */
+    @Transactional(readOnly = true)
+    public long countDimensionKeys() {
+        Long count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(DISTINCT r.product_name, r.sales_region) FROM sales_rollup r " +
+            "WHERE r.granularity = 'YEAR' AND r.product_name <> ''", Long.class);
+        return count != null ? count : 0;
+    }
+
+    // 先于其他启动任务执行，启动预热读到的是对账后的汇总表。汇总表为空（首次部署）时逐段建出全部历史，
+    // 否则只检查最新的窗口；之后每轮检查一个窗口，依次向前，扫完最早的数据后从最新的重新开始
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void initialize() {
+        if (dataBounds() == null) {
+            reconcile();
+        } else {
+            reconcileNextWindow();
+        }
+        Duration interval = Duration.ofMinutes(reconcileMinutes);
+        scheduler.scheduleWithFixedDelay(this::reconcileQuietly, Instant.now().plus(interval), interval);
+    }
+
+    /**
+     * 逐窗口与 sales 表对账全部历史，每个窗口单独检查、单独修正；有修正时发布 {@link SalesRollupRebuiltEvent}。
+     * 返回不一致的组合数。
+     */
+    public long reconcile() {
+        LocalDate[] range = dayRange();
+        if (range == null) {
+            return 0;
+        }
+        return reconcile(range[0], range[1]);
+    }
+
+    /**
+     * 对账 [from, to) 内的日期，按 slice-days 天一段依次检查，不一致的段在各自的事务中修正。
+     */
+    public long reconcile(LocalDate from, LocalDate to) {
+        long begin = System.currentTimeMillis();
+        long drifted = 0;
+        for (LocalDate sliceStart = from; sliceStart.isBefore(to); sliceStart = sliceStart.plusDays(sliceDays)) {
+            LocalDate sliceEnd = sliceStart.plusDays(sliceDays).isBefore(to) ? sliceStart.plusDays(sliceDays) : to;
+            Long count = jdbcTemplate.queryForObject(DRIFT_SQL, Long.class,
+                    java.sql.Date.valueOf(sliceStart), java.sql.Date.valueOf(sliceEnd),
+                    Timestamp.valueOf(sliceStart.atStartOfDay()), Timestamp.valueOf(sliceEnd.atStartOfDay()));
+            if (count != null && count > 0) {
+                log.warn("销售汇总 [{}, {}) 有 {} 个 (日期, 产品, 区域) 组合与 sales 表不一致，开始修正", sliceStart, sliceEnd, count);
+                LocalDate repairFrom = sliceStart;
+                LocalDate repairTo = sliceEnd;
+                transactionTemplate.execute(status -> repair(repairFrom, repairTo));
+                drifted += count;
+            }
+        }
+        log.info("销售汇总对账 [{}, {}) 完成，{} 个组合不一致，耗时 {} ms", from, to, drifted, System.currentTimeMillis() - begin);
+        if (drifted > 0) {
+            eventPublisher.publishEvent(new SalesRollupRebuiltEvent(drifted));
+        }
+        return drifted;
+    }
+
+    private void reconcileNextWindow() {
+        LocalDate[] range = dayRange();
+        if (range == null) {
+            return;
+        }
+        if (reconcileCursor == null || !reconcileCursor.isAfter(range[0]) || reconcileCursor.isAfter(range[1])) {
+            reconcileCursor = range[1];
+        }
+        LocalDate from = reconcileCursor.minusDays(sliceDays).isAfter(range[0]) ? reconcileCursor.minusDays(sliceDays) : range[0];
+        reconcile(from, reconcileCursor);
+        reconcileCursor = from;
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcileNextWindow();
+        } catch (RuntimeException e) {
+            log.warn("销售汇总对账失败: {}", e.getMessage());
+        }
+    }
+
+    // 在调用方的事务中把 [from, to) 内的小时明细行修正为 sales 表的汇总：差额按普通写入的方式逐级推导写入。
+    // 锁顺序与写事务一致（先 sales 行，再按粒度由细到粗的汇总行），只锁住这一窗口
+    private int repair(LocalDate from, LocalDate to) {
+        Object[] window = {Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay())};
+        Map<BucketKey, RollupRow> deltas = new HashMap<>();
+        jdbcTemplate.query(REPAIR_SALES_SQL, (RowCallbackHandler) rs -> delta(deltas, rs, 1), window);
+        jdbcTemplate.query(REPAIR_ROLLUP_SQL, (RowCallbackHandler) rs -> delta(deltas, rs, -1), window);
+        deltas.values().removeIf(row -> row.getOrderCount() == 0 && row.getQuantity() == 0
+                && row.getAmount().signum() == 0 && row.getProfit().signum() == 0);
+        if (!deltas.isEmpty()) {
+            applyHourly(deltas, true);
+        }
+        return deltas.size();
+    }
+
+    private static void delta(Map<BucketKey, RollupRow> deltas, ResultSet rs, int sign) throws SQLException {
+        BucketKey key = new BucketKey(rs.getTimestamp("bucket_start").toLocalDateTime(),
+                rs.getString("product_name"), rs.getString("sales_region"));
+        BigDecimal factor = BigDecimal.valueOf(sign);
+        deltas.computeIfAbsent(key, k -> new RollupRow(k.bucketStart, k.productName, k.salesRegion))
+                .add(sign * rs.getLong("quantity"), rs.getBigDecimal("amount").multiply(factor),
+                        rs.getBigDecimal("profit").multiply(factor), sign * rs.getLong("order_count"));
+    }
+
+    // sales 表与汇总明细行合起来的日期范围 [首日, 末日的下一天)，都为空时返回 null
+    private LocalDate[] dayRange() {
+        java.sql.Date[] sales = jdbcTemplate.queryForObject(SALES_BOUNDS_SQL, (rs, rowNum) -> new java.sql.Date[] {
+                rs.getDate("min_day"), rs.getDate("max_day")
+        });
+        LocalDateTime[] rollup = dataBounds();
+        LocalDate first = null;
+        LocalDate last = null;
+        if (sales != null && sales[0] != null && sales[1] != null) {
+            first = sales[0].toLocalDate();
+            last = sales[1].toLocalDate().plusDays(1);
+        }
+        if (rollup != null) {
+            LocalDate rollupFirst = rollup[0].toLocalDate();
+            LocalDate rollupLast = rollup[1].minusNanos(1).toLocalDate().plusDays(1);
+            first = first == null || rollupFirst.isBefore(first) ? rollupFirst : first;
+            last = last == null || rollupLast.isAfter(last) ? rollupLast : last;
+        }
+        return first != null ? new LocalDate[] {first, last} : null;
+    }
+
+    /**
+     * 按多组分段计划读取汇总行，每行回调一次其所属的每个计划（计划间分段重叠时回调多次）。
+     */
+    private void scan(List<List<RollupSegment>> plans, boolean detail, Collection<String> products, String region,
+                      SegmentRowHandler handler) {
+        Map<String, RollupSegment> segments = new LinkedHashMap<>();
+        for (List<RollupSegment> plan : plans) {
+            for (RollupSegment segment : plan) {
+                segments.putIfAbsent(segment.toString(), segment);
+            }
+        }
+        if (segments.isEmpty() || (products != null && products.isEmpty())) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder(
+            "SELECT r.granularity, r.bucket_start, r.product_name, r.sales_region, " +
+            "r.quantity, r.amount, r.profit, r.order_count FROM sales_rollup r WHERE (");
+        List<Object> args = new ArrayList<>();
+        String separator = "";
+        for (RollupSegment segment : segments.values()) {
+            sql.append(separator).append("(r.granularity = ? AND r.bucket_start >= ? AND r.bucket_start < ?)");
+            args.add(segment.getLevel().name());
+            args.add(Timestamp.valueOf(segment.getFrom()));
+            args.add(Timestamp.valueOf(segment.getTo()));
+            separator = " OR ";
+        }
+        // 按维度分组或过滤时读明细行，否则读合计行
+        sql.append(detail ? ") AND r.product_name <> ''" : ") AND r.product_name = ''");
+        if (products != null) {
+            StringJoiner placeholders = new StringJoiner(", ", " AND r.product_name IN (", ")");
+            for (String product : products) {
+                placeholders.add("?");
+                args.add(product);
+            }
+            sql.append(placeholders);
+        }
+        if (region != null) {
+            sql.append(" AND r.sales_region = ?");
+            args.add(region);
+        }
+        sql.append(" ORDER BY r.bucket_start");
+
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            RollupLevel level = RollupLevel.valueOf(rs.getString("granularity"));
+            LocalDateTime bucket = rs.getTimestamp("bucket_start").toLocalDateTime();
+            for (int i = 0; i < plans.size(); i++) {
+                for (RollupSegment segment : plans.get(i)) {
+                    if (segment.getLevel() == level && !bucket.isBefore(segment.getFrom())
+                            && bucket.isBefore(segment.getTo())) {
+                        handler.accept(i, bucket, rs);
+                        break;
+                    }
+                }
+            }
+        }, args.toArray());
+    }
+
+    private Map<BucketKey, RollupRow> rollUp(Map<BucketKey, RollupRow> finer, RollupLevel level) {
+        Map<BucketKey, RollupRow> coarser = new HashMap<>();
+        for (RollupRow row : finer.values()) {
+            BucketKey key = new BucketKey(level.truncate(row.getBucketStart()), row.getProductName(), row.getSalesRegion());
+            coarser.computeIfAbsent(key, k -> new RollupRow(k.bucketStart, k.productName, k.salesRegion))
+                    .add(row.getQuantity(), row.getAmount(), row.getProfit(), row.getOrderCount());
+        }
+        return coarser;
+    }
+
+    private Object[] toArgs(RollupLevel level, RollupRow row, String productName, String salesRegion) {
+        return new Object[] {
+            level.name(),
+            Timestamp.valueOf(row.getBucketStart()),
+            productName,
+            salesRegion,
+            row.getQuantity(),
+            row.getAmount(),
+            row.getProfit(),
+            row.getOrderCount()
+        };
+    }
+
+    private interface SegmentRowHandler {
+        void accept(int plan, LocalDateTime bucket, ResultSet rs) throws SQLException;
+    }
+
+    private static final class BucketKey {
+        private final LocalDateTime bucketStart;
+        private final String productName;
+        private final String salesRegion;
+
+        private BucketKey(LocalDateTime bucketStart, String productName, String salesRegion) {
+            this.bucketStart = bucketStart;
+            this.productName = productName;
+            this.salesRegion = salesRegion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return Objects.equals(bucketStart, other.bucketStart)
+                    && Objects.equals(productName, other.productName)
+                    && Objects.equals(salesRegion, other.salesRegion);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucketStart, productName, salesRegion);
+        }
+    }
+}
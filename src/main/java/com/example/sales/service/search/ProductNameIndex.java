@@ -0,0 +1,185 @@
+package com.example.sales.service.search;
+
+import com.example.sales.event.SalesChange;
+import com.example.sales.event.SalesChangedEvent;
+import com.example.sales.service.dictionary.DimensionDictionary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 产品名称的内存三元组（trigram）索引。产品名称包含匹配先在这里解析成精确名称，
+ * 再以 IN 下推到 SQL，避免 LIKE '%x%' 无法使用索引而扫描整张 sales 表。
+ * 名称来自维度字典，启动时加载，提交后补充新出现的产品；删除的产品仍保留，只会多出一个查不到行的名称。
+ */
+@Slf4j
+@Component
+public class ProductNameIndex {
+
+    private static final int GRAM = 3;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final DimensionDictionary dimensionDictionary;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public ProductNameIndex(DimensionDictionary dimensionDictionary) {
+        this.dimensionDictionary = dimensionDictionary;
+    }
+
+    // 在维度字典加载之后加载
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    public synchronized void reload() {
+        long begin = System.currentTimeMillis();
+        snapshot = new Snapshot(new TreeSet<>(dimensionDictionary.allValues(DimensionDictionary.Dimension.PRODUCT)));
+        log.info("产品名称索引加载完成，共 {} 个产品，耗时 {} ms",
+                snapshot.names.length, System.currentTimeMillis() - begin);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void afterSalesCommitted(SalesChangedEvent event) {
+        Snapshot current = current();
+        Set<String> added = new TreeSet<>();
+        for (SalesChange change : event.getChanges()) {
+            String name = change.getProductName();
+            if (name != null && !name.isEmpty() && !current.contains(name)) {
+                added.add(name);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            Set<String> names = new TreeSet<>(Arrays.asList(snapshot.names));
+            names.addAll(added);
+            snapshot = new Snapshot(names);
+        }
+    }
+
+    /**
+     * 名称包含 keyword 的全部产品，按名称排序；没有匹配时返回空列表。
+     * 与 LIKE 在默认排序规则 utf8mb4_0900_ai_ci 下一样不区分大小写和重音，chateau 能匹配 Château。
+     */
+    public List<String> resolve(String keyword) {
+        return current().resolve(fold(keyword));
+    }
+
+    // 分解成基本字母加组合符号后去掉组合符号，再转小写
+    private static String fold(String value) {
+        return MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+        private final String[] names;
+        // 去掉重音并转小写后的名称
+        private final String[] lowered;
+        // 三元组 -> 包含它的名称下标，升序
+        private final Map<String, int[]> postings;
+
+        private Snapshot(Set<String> sortedNames) {
+            names = sortedNames.toArray(new String[0]);
+            lowered = new String[names.length];
+            Map<String, List<Integer>> lists = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                lowered[i] = fold(names[i]);
+                for (int j = 0; j + GRAM <= lowered[i].length(); j++) {
+                    List<Integer> list = lists.computeIfAbsent(lowered[i].substring(j, j + GRAM), k -> new ArrayList<>());
+                    // 同一名称内重复的三元组只记一次
+                    if (list.isEmpty() || list.get(list.size() - 1) != i) {
+                        list.add(i);
+                    }
+                }
+            }
+            postings = new HashMap<>(lists.size() * 2);
+            for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+                List<Integer> list = entry.getValue();
+                int[] ids = new int[list.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = list.get(i);
+                }
+                postings.put(entry.getKey(), ids);
+            }
+        }
+
+        private boolean contains(String name) {
+            return Arrays.binarySearch(names, name) >= 0;
+        }
+
+        private List<String> resolve(String keyword) {
+            List<String> result = new ArrayList<>();
+            // 不足一个三元组的关键字直接扫描名称字典，字典只有去重后的产品名，扫描代价很小
+            if (keyword.length() < GRAM) {
+                for (int i = 0; i < names.length; i++) {
+                    if (lowered[i].contains(keyword)) {
+                        result.add(names[i]);
+                    }
+                }
+                return result;
+            }
+
+            List<int[]> lists = new ArrayList<>();
+            for (int j = 0; j + GRAM <= keyword.length(); j++) {
+                int[] ids = postings.get(keyword.substring(j, j + GRAM));
+                if (ids == null) {
+                    return result;
+                }
+                lists.add(ids);
+            }
+            // 从最短的列表开始求交集
+            lists.sort(Comparator.comparingInt(ids -> ids.length));
+            int[] candidates = lists.get(0);
+            for (int k = 1; k < lists.size() && candidates.length > 0; k++) {
+                candidates = intersect(candidates, lists.get(k));
+            }
+            // 三元组都出现不代表连续出现，逐个确认
+            for (int id : candidates) {
+                if (lowered[id].contains(keyword)) {
+                    result.add(names[id]);
+                }
+            }
+            return result;
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] out = new int[Math.min(a.length, b.length)];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    out[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.sales.service.series;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 趋势序列降采样（Largest-Triangle-Three-Buckets）。
+ * 保留首尾点，其余每个桶选取与相邻桶构成三角形面积最大的点，从而保持曲线形状。
+ */
+public final class TrendDownsampler {
+
+    public static final int MIN_POINTS = 3;
+
+    private TrendDownsampler() {
+    }
+
+    /**
+     * 返回应保留的下标（升序）。maxPoints 为空或不小于点数时返回全部下标，小于 MIN_POINTS 时抛出 IllegalArgumentException。
+     */
+    public static int[] selectIndices(double[] x, double[] y, Integer maxPoints) {
+        int size = y.length;
+        if (maxPoints != null && maxPoints < MIN_POINTS) {
+            throw new IllegalArgumentException("maxPoints 不能小于 " + MIN_POINTS);
+        }
+        if (maxPoints == null || maxPoints >= size) {
+            return allIndices(size);
+        }
+        int threshold = maxPoints;
+
+        int[] selected = new int[threshold];
+        double every = (double) (size - 2) / (threshold - 2);
+        int a = 0;
+        selected[0] = 0;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // 下一个桶的平均点
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+            int avgLength = avgEnd - avgStart;
+            avgX /= avgLength;
+            avgY /= avgLength;
+
+            // 当前桶内选取三角形面积最大的点
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            selected[i + 1] = next;
+            a = next;
+        }
+
+        selected[threshold - 1] = size - 1;
+        return selected;
+    }
+
+    public static <T> List<T> pick(List<T> values, int[] indices) {
+        if (indices.length == values.size()) {
+            return values;
+        }
+        List<T> picked = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            picked.add(values.get(index));
+        }
+        return picked;
+    }
+
+    private static int[] allIndices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.sales.service.sketch;
+
+import com.example.sales.event.SalesChange;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 按天缓存的内存摘要，LRU 淘汰。
+ * 已加载的天在写事务提交后增量更新；含删除的天无法从摘要中扣减，直接失效等待重新加载。
+ * 有未完成的写事务或加载期间发生过提交时，加载结果只用于本次读取，不写入缓存。
+ */
+public class DailySketchCache<S> {
+
+    private final int maxDays;
+    private final LinkedHashMap<LocalDate, S> days;
+    private int pendingWrites;
+    private long version;
+
+    public DailySketchCache(int maxDays) {
+        this.maxDays = maxDays;
+        this.days = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public int getMaxDays() {
+        return maxDays;
+    }
+
+    /**
+     * 登记一批写入：当前事务提交后应用到已加载的天，回滚则丢弃；无事务时立即应用。
+     */
+    public void track(List<SalesChange> changes, BiConsumer<S, List<SalesChange>> applier) {
+        Map<LocalDate, List<SalesChange>> changesByDay = groupByDay(changes);
+        begin();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commit(changesByDay, applier);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    commit(changesByDay, applier);
+                } else {
+                    rollback();
+                }
+            }
+        });
+    }
+
+    private synchronized void begin() {
+        pendingWrites++;
+    }
+
+    private synchronized void rollback() {
+        pendingWrites--;
+    }
+
+    private synchronized void commit(Map<LocalDate, List<SalesChange>> changesByDay, BiConsumer<S, List<SalesChange>> applier) {
+        pendingWrites--;
+        version++;
+        for (Map.Entry<LocalDate, List<SalesChange>> entry : changesByDay.entrySet()) {
+            S sketch = days.get(entry.getKey());
+            if (sketch == null) {
+                continue;
+            }
+            if (hasRemoval(entry.getValue())) {
+                days.remove(entry.getKey());
+            } else {
+                applier.accept(sketch, entry.getValue());
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        version++;
+        days.clear();
+    }
+
+    /**
+     * 读取 [start, end] 内每天的摘要，缺失的天由 loader 一次加载（loader 在锁外执行，
+     * 须为每个请求的天返回摘要，无数据的天返回空摘要）。
+     * reader 在锁内执行，期间摘要不会被并发修改。
+     */
+    public <R> R read(LocalDate start, LocalDate end,
+                      Function<Set<LocalDate>, Map<LocalDate, S>> loader,
+                      Function<List<S>, R> reader) {
+        while (true) {
+            Set<LocalDate> missing = new TreeSet<>();
+            long loadVersion;
+            synchronized (this) {
+                for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                    if (!days.containsKey(day)) {
+                        missing.add(day);
+                    }
+                }
+                loadVersion = version;
+            }
+
+            Map<LocalDate, S> loaded = missing.isEmpty() ? Collections.<LocalDate, S>emptyMap() : loader.apply(missing);
+
+            synchronized (this) {
+                List<S> sketches = new ArrayList<>();
+                for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                    S sketch = missing.contains(day) ? loaded.get(day) : days.get(day);
+                    if (sketch == null) {
+                        // 加载期间该天被淘汰或失效，重新读取
+                        sketches = null;
+                        break;
+                    }
+                    sketches.add(sketch);
+                }
+                if (sketches == null) {
+                    continue;
+                }
+                R result = reader.apply(sketches);
+                if (pendingWrites == 0 && version == loadVersion) {
+                    for (LocalDate day : missing) {
+                        days.put(day, loaded.get(day));
+                    }
+                    trim();
+                }
+                return result;
+            }
+        }
+    }
+
+    private static Map<LocalDate, List<SalesChange>> groupByDay(List<SalesChange> changes) {
+        Map<LocalDate, List<SalesChange>> byDay = new HashMap<>();
+        for (SalesChange change : changes) {
+            byDay.computeIfAbsent(change.getSalesDate().toLocalDate(), day -> new ArrayList<>()).add(change);
+        }
+        return byDay;
+    }
+
+    private void trim() {
+        Iterator<LocalDate> iterator = days.keySet().iterator();
+        while (days.size() > maxDays && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static boolean hasRemoval(List<SalesChange> changes) {
+        for (SalesChange change : changes) {
+            if (change.isRemoval()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.sales.service.sketch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带权 Space-Saving 频繁项摘要，可合并。
+ * 每个计数器记录估计值及上下误差，真实值落在 [count - lowerError, count + upperError] 内；
+ * 未被记录的项真实值不超过 {@link #getMissingBound()}。
+ */
+public class SpaceSavingSketch {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private double total;
+    // 合并产生的摘要记录被淘汰项的上界；直接写入的摘要为 -1，取最小计数器
+    private double mergedMissingBound = -1;
+
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String item, double weight) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count += weight;
+        } else if (counters.size() < capacity) {
+            counters.put(item, new Counter(item, weight, 0, 0));
+        } else {
+            // 替换当前最小计数器，新项继承其计数作为下误差
+            Counter min = minCounter();
+            counters.remove(min.item);
+            counters.put(item, new Counter(item, min.count + weight, min.count, 0));
+        }
+    }
+
+    /**
+     * 合并多个摘要：同一项的估计值相加，某一方未记录的项以该方的上界计入上误差。
+     */
+    public static SpaceSavingSketch merge(Collection<SpaceSavingSketch> sketches, int capacity) {
+        SpaceSavingSketch result = new SpaceSavingSketch(capacity);
+        result.mergedMissingBound = 0;
+        for (SpaceSavingSketch sketch : sketches) {
+            result.mergeFrom(sketch);
+        }
+        return result;
+    }
+
+    private void mergeFrom(SpaceSavingSketch other) {
+        if (other.counters.isEmpty()) {
+            return;
+        }
+        double thisMissing = getMissingBound();
+        double otherMissing = other.getMissingBound();
+
+        Map<String, Counter> merged = new HashMap<>(counters.size() + other.counters.size());
+        for (Counter counter : counters.values()) {
+            Counter match = other.counters.get(counter.item);
+            if (match != null) {
+                merged.put(counter.item, new Counter(counter.item, counter.count + match.count,
+                        counter.lowerError + match.lowerError, counter.upperError + match.upperError));
+            } else {
+                merged.put(counter.item, new Counter(counter.item, counter.count,
+                        counter.lowerError, counter.upperError + otherMissing));
+            }
+        }
+        for (Counter counter : other.counters.values()) {
+            if (!merged.containsKey(counter.item)) {
+                merged.put(counter.item, new Counter(counter.item, counter.count,
+                        counter.lowerError, counter.upperError + thisMissing));
+            }
+        }
+
+        double missingBound = thisMissing + otherMissing;
+        counters.clear();
+        if (merged.size() <= capacity) {
+            counters.putAll(merged);
+        } else {
+            List<Counter> sorted = new ArrayList<>(merged.values());
+            sorted.sort(Comparator.comparingDouble((Counter c) -> c.count).reversed());
+            for (int i = 0; i < sorted.size(); i++) {
+                Counter counter = sorted.get(i);
+                if (i < capacity) {
+                    counters.put(counter.item, counter);
+                } else {
+                    missingBound = Math.max(missingBound, counter.count + counter.upperError);
+                }
+            }
+        }
+        mergedMissingBound = missingBound;
+        total += other.total;
+    }
+
+    /**
+     * 按估计值降序返回前 k 项。
+     */
+    public List<Estimate> top(int k) {
+        List<Counter> sorted = new ArrayList<>(counters.values());
+        sorted.sort(Comparator.comparingDouble((Counter c) -> c.count).reversed());
+        List<Estimate> result = new ArrayList<>(Math.min(k, sorted.size()));
+        for (Counter counter : sorted.subList(0, Math.min(k, sorted.size()))) {
+            result.add(new Estimate(counter.item, counter.count,
+                    counter.count - counter.lowerError, counter.count + counter.upperError));
+        }
+        return result;
+    }
+
+    /**
+     * 未被记录的项的真实值上界。
+     */
+    public double getMissingBound() {
+        if (mergedMissingBound >= 0) {
+            return mergedMissingBound;
+        }
+        return counters.size() < capacity ? 0 : minCounter().count;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    private Counter minCounter() {
+        Counter min = null;
+        for (Counter counter : counters.values()) {
+            if (min == null || counter.count < min.count) {
+                min = counter;
+            }
+        }
+        return min;
+    }
+
+    private static final class Counter {
+        private final String item;
+        private double count;
+        private final double lowerError;
+        private final double upperError;
+
+        private Counter(String item, double count, double lowerError, double upperError) {
+            this.item = item;
+            this.count = count;
+            this.lowerError = lowerError;
+            this.upperError = upperError;
+        }
+    }
+
+    public static final class Estimate {
+        private final String item;
+        private final double count;
+        private final double lowerBound;
+        private final double upperBound;
+
+        public Estimate(String item, double count, double lowerBound, double upperBound) {
+            this.item = item;
+            this.count = count;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        public double getCount() {
+            return count;
+        }
+
+        public double getLowerBound() {
+            return lowerBound;
+        }
+
+        public double getUpperBound() {
+            return upperBound;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.sales.service.sketch;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * 合并式 t-digest 分位数摘要。新值先写入缓冲区，满后与已有质心按 k1 尺度函数一起压缩，
+ * 质心数量约为 compression，两端质心更细，尾部分位数更准确。
+ */
+public class TDigest {
+
+    private final double compression;
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        int bufferSize = (int) (5 * compression);
+        this.bufferMeans = new double[bufferSize];
+        this.bufferWeights = new double[bufferSize];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public synchronized void add(double value, double weight) {
+        if (weight <= 0 || Double.isNaN(value)) {
+            return;
+        }
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public static TDigest merge(Collection<TDigest> digests, double compression) {
+        TDigest result = new TDigest(compression);
+        for (TDigest digest : digests) {
+            synchronized (digest) {
+                digest.compress();
+                for (int i = 0; i < digest.means.length; i++) {
+                    result.add(digest.means[i], digest.weights[i]);
+                }
+                // 保留原始极值，质心均值会抹平首尾
+                if (digest.totalWeight > 0) {
+                    result.min = Math.min(result.min, digest.min);
+                    result.max = Math.max(result.max, digest.max);
+                }
+            }
+        }
+        result.compress();
+        return result;
+    }
+
+    /**
+     * 估计 q 分位数（0 ≤ q ≤ 1），无数据时返回 NaN。
+     */
+    public synchronized double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("分位数须在 0 到 1 之间: " + q);
+        }
+        compress();
+        int n = means.length;
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (n == 1) {
+            return means[0];
+        }
+
+        double index = q * totalWeight;
+        // 首个质心中心之前在 min 与其均值之间插值，末个质心中心之后同理
+        double firstCenter = weights[0] / 2;
+        if (index <= firstCenter) {
+            return min + (means[0] - min) * (index / firstCenter);
+        }
+        double cumulative = 0;
+        for (int i = 0; i < n - 1; i++) {
+            double left = cumulative + weights[i] / 2;
+            double right = cumulative + weights[i] + weights[i + 1] / 2;
+            if (index <= right) {
+                return means[i] + (means[i + 1] - means[i]) * (index - left) / (right - left);
+            }
+            cumulative += weights[i];
+        }
+        double lastCenter = totalWeight - weights[n - 1] / 2;
+        return means[n - 1] + (max - means[n - 1]) * Math.min(1, (index - lastCenter) / (weights[n - 1] / 2));
+    }
+
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public synchronized int centroidCount() {
+        compress();
+        return means.length;
+    }
+
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int n = means.length + buffered;
+        double[] allMeans = Arrays.copyOf(means, n);
+        double[] allWeights = Arrays.copyOf(weights, n);
+        System.arraycopy(bufferMeans, 0, allMeans, means.length, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, means.length, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> allMeans[i]));
+
+        double[] mergedMeans = new double[n];
+        double[] mergedWeights = new double[n];
+        int count = 0;
+        double weightSoFar = 0;
+        double currentMean = allMeans[order[0]];
+        double currentWeight = allWeights[order[0]];
+        double kLeft = scale(0);
+        for (int j = 1; j < n; j++) {
+            int i = order[j];
+            double q = (weightSoFar + currentWeight + allWeights[i]) / totalWeight;
+            if (scale(q) - kLeft <= 1) {
+                currentWeight += allWeights[i];
+                currentMean += (allMeans[i] - currentMean) * allWeights[i] / currentWeight;
+            } else {
+                mergedMeans[count] = currentMean;
+                mergedWeights[count] = currentWeight;
+                count++;
+                weightSoFar += currentWeight;
+                kLeft = scale(weightSoFar / totalWeight);
+                currentMean = allMeans[i];
+                currentWeight = allWeights[i];
+            }
+        }
+        mergedMeans[count] = currentMean;
+        mergedWeights[count] = currentWeight;
+        count++;
+
+        means = Arrays.copyOf(mergedMeans, count);
+        weights = Arrays.copyOf(mergedWeights, count);
+    }
+
+    // k1 尺度函数：k(q) = δ / (2π) · asin(2q - 1)
+    private double scale(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+}
@@ -0,0 +1,12 @@
+CREATE TABLE sales_rollup (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    granularity VARCHAR(10) NOT NULL COMMENT '汇总粒度: HOUR/DAY/WEEK/MONTH/YEAR',
+    bucket_start DATETIME NOT NULL COMMENT '桶起始时间',
+    product_name VARCHAR(100) NOT NULL DEFAULT '' COMMENT '产品名称，空串表示全部',
+    sales_region VARCHAR(50) NOT NULL DEFAULT '' COMMENT '销售区域，空串表示全部',
+    quantity BIGINT NOT NULL DEFAULT 0,
+    amount DECIMAL(19,2) NOT NULL DEFAULT 0,
+    profit DECIMAL(19,4) NOT NULL DEFAULT 0,
+    order_count BIGINT NOT NULL DEFAULT 0,
+    UNIQUE KEY uk_rollup_bucket (granularity, bucket_start, product_name, sales_region)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='销售分层时间汇总表';
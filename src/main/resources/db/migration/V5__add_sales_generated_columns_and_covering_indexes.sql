@@ -0,0 +1,11 @@
+-- 日期分桶使用存储生成列，分组和过滤可直接走索引
+ALTER TABLE sales
+    ADD COLUMN sales_day DATE GENERATED ALWAYS AS (DATE(sales_date)) STORED COMMENT '销售日期（天）',
+    ADD COLUMN sales_month DATE GENERATED ALWAYS AS (DATE_SUB(DATE(sales_date), INTERVAL DAYOFMONTH(sales_date) - 1 DAY)) STORED COMMENT '销售月份（当月第一天）';
+
+-- 覆盖索引：日期区间内的区域、产品聚合只扫描索引
+ALTER TABLE sales
+    ADD INDEX idx_sales_date_region_cover (sales_date, sales_region, total_amount, sales_quantity),
+    ADD INDEX idx_sales_date_product_cover (sales_date, product_name, sales_quantity, total_amount),
+    ADD INDEX idx_sales_day_product_cover (sales_day, product_name, sales_quantity, total_amount, unit_price),
+    ADD INDEX idx_sales_month_region_cover (sales_month, sales_region, total_amount, sales_quantity);
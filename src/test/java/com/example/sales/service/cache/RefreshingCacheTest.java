@@ -0,0 +1,48 @@
+package com.example.sales.service.cache;
+
+import com.example.sales.dto.SalesOverviewDTO;
+import com.example.sales.service.AnalyticsCacheService;
+import com.example.sales.service.DataVisualizationService;
+import com.example.sales.service.SalesService;
+import com.example.sales.service.parallel.SingleFlight;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RefreshingCacheTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final RefreshingCache cache = new RefreshingCache(new ThreadPoolTaskScheduler(), singleFlight, 300, 30, 20, 200);
+
+    // SalesService.getSalesOverview 自己也按 "salesOverview" 和相同参数合并，缓存首次加载不能与它共用键
+    @Test
+    void loadsSalesOverviewThroughCache() {
+        SalesOverviewDTO overview = new SalesOverviewDTO();
+        SalesService salesService = mock(SalesService.class);
+        when(salesService.getSalesOverview(any(), any(), any(), any())).thenAnswer(invocation ->
+                singleFlight.execute("salesOverview", () -> overview,
+                        invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3)));
+        AnalyticsCacheService service = new AnalyticsCacheService(salesService, mock(DataVisualizationService.class),
+                cache, new ThreadPoolTaskScheduler(), Collections.singletonList("sales"));
+        LocalDate end = LocalDate.of(2024, 6, 30);
+
+        CachedValue<SalesOverviewDTO> first = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> service.getSalesOverview(end.minusDays(29), end, null, null));
+        assertSame(overview, first.getValue());
+
+        CachedValue<SalesOverviewDTO> second = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> service.getSalesOverview(end.minusDays(29), end, null, null));
+        assertSame(overview, second.getValue());
+        assertTrue(singleFlight.getStats().stream().allMatch(stats -> stats.getInFlight() == 0));
+    }
+}